@@ -0,0 +1,59 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import model.Action;
+import model.PlayerView;
+
+// player views for the benchmarks, sized by map size and entity count and the same for every run
+// the benchmarks are in a package and reach the default package only through benchmarks.Fixtures
+public class BenchmarkFixtures implements benchmarks.Fixtures {
+    public static final long SEED = 2020;
+    public static final int PLAYER_COUNT = 4;
+    // share of the entities that are resources, the rest are units split over the players
+    public static final double RESOURCE_SHARE = 0.75;
+    public static final int RESOURCE_FIELD_COUNT = 16;
+
+    private static LocalSimulator newGame(int mapSize, int entityCount) {
+        int resourceCount = (int) (entityCount * RESOURCE_SHARE);
+        int unitsPerPlayer = (entityCount - resourceCount) / PLAYER_COUNT;
+        return LocalSimulator.randomGame(SEED, mapSize, PLAYER_COUNT, resourceCount, unitsPerPlayer);
+    }
+
+    // a generated view of player 1 with bases, buildings and resource fields, maps up to 256 make 10x loads possible
+    @Override
+    public PlayerView playerView(int mapSize, int entityCount) {
+        PlayerViewGenerator.Config config = new PlayerViewGenerator.Config();
+        config.seed = SEED;
+        config.mapSize = mapSize;
+        config.playerCount = PLAYER_COUNT;
+        config.resourceCount = (int) (entityCount * RESOURCE_SHARE);
+        config.unitsPerPlayer = (entityCount - config.resourceCount) / PLAYER_COUNT;
+        config.resourceFieldCount = RESOURCE_FIELD_COUNT;
+        return PlayerViewGenerator.generate(config);
+    }
+
+    @Override
+    public Action getAction(PlayerView playerView) {
+        return new MyStrategy(1, TickProfiler.DISABLED, TimeBudget.unlimited()).getAction(playerView, null);
+    }
+
+    @Override
+    public benchmarks.StrategyStages strategyStages(int mapSize, int entityCount, int tickCount) {
+        return new MyStrategyStages(mapSize, playedViews(mapSize, entityCount, tickCount));
+    }
+
+    // consecutive views of player 1 while MyStrategy plays it, so strategy benchmarks see realistic changes between ticks
+    public static PlayerView[] playedViews(int mapSize, int entityCount, int tickCount) {
+        LocalSimulator simulator = newGame(mapSize, entityCount);
+        MyStrategy myStrategy = new MyStrategy(1, TickProfiler.DISABLED, TimeBudget.unlimited());
+        List<PlayerView> playerViews = new ArrayList<>();
+        simulator.setBot(1, playerView -> {
+            playerViews.add(playerView);
+            return myStrategy.getAction(playerView, null);
+        });
+        for (int tick = 0; tick < tickCount && !simulator.isFinished(); tick++) {
+            simulator.tick();
+        }
+        return playerViews.toArray(new PlayerView[0]);
+    }
+}
@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.List;
+
+import model.Action;
+import model.ActionWriter;
+import model.ClientMessage;
+import model.Entity;
+import model.EntityType;
+import model.PlayerView;
+import model.Vec2Int;
+import util.ByteBufferOutputStream;
+
+// the stages of benchmarks.StrategyBenchmark over views of a played game
+// the stages run on the same structures getAction builds: the distance field over the resources,
+// the target positions next to them, the builder assignment to those positions and the house search
+public class MyStrategyStages implements benchmarks.StrategyStages {
+    private final int mapSize;
+    private final PlayerView[] playerViews;
+    private int viewIndex = 0;
+    private final MyStrategy myStrategy;
+    // the action message is encoded into a reused buffer and the bytes dropped
+    private final ByteBufferOutputStream outputStream;
+    private final ActionWriter actionWriter = new ActionWriter();
+
+    // per view: the resource cells, and the world state with the target positions and builders
+    private final int[][] resourceCells;
+    private final WorldState[] worldStates;
+    private final int[][] builderCells;
+    private final TargetPositionFinder[] positionFinders;
+
+    private final int[] otherMapCorners = new int[3];
+    private final DistanceField incrementalField = new DistanceField(MyStrategy.RESOURCE_DIST_WEIGHT);
+    private final DistanceField fullField = new DistanceField(MyStrategy.RESOURCE_DIST_WEIGHT);
+    private final TargetPositionFinder positionFinder = new TargetPositionFinder();
+    private final AssignmentSolver assignmentSolver = new AssignmentSolver(MyStrategy.BUILDER_TARGET_CANDIDATES);
+    private final int[] assignment;
+
+    public MyStrategyStages(int mapSize, PlayerView[] playerViews) {
+        this.mapSize = mapSize;
+        this.playerViews = playerViews;
+        myStrategy = new MyStrategy(1, TickProfiler.DISABLED, TimeBudget.unlimited());
+        outputStream = new ByteBufferOutputStream(Channels.newChannel(OutputStream.nullOutputStream()),
+                                                  ByteBuffer.allocate(1 << 20));
+        for (PlayerView playerView : playerViews) {
+            myStrategy.getAction(playerView, null);
+        }
+
+        resourceCells = new int[playerViews.length][];
+        worldStates = new WorldState[playerViews.length];
+        builderCells = new int[playerViews.length][];
+        positionFinders = new TargetPositionFinder[playerViews.length];
+        int maxBuilderCount = 0;
+        for (int i = 0; i < playerViews.length; i++) {
+            PlayerView playerView = playerViews[i];
+            worldStates[i] = new WorldState(playerView.getMyId(), playerView.getEntityPropertiesTable(),
+                                            MyStrategy.SPATIAL_INDEX_BUCKET_SIZE);
+            worldStates[i].ingest(playerView);
+            List<Entity> resources = worldStates[i].getResources();
+            resourceCells[i] = new int[resources.size()];
+            for (int j = 0; j < resources.size(); j++) {
+                resourceCells[i][j] = getCell(resources.get(j).getPosition());
+            }
+            List<Entity> builders = worldStates[i].getMyEntities().get(EntityType.BUILDER_UNIT);
+            builderCells[i] = new int[builders == null ? 0 : builders.size()];
+            for (int j = 0; j < builderCells[i].length; j++) {
+                builderCells[i][j] = getCell(builders.get(j).getPosition());
+            }
+            maxBuilderCount = Math.max(maxBuilderCount, builderCells[i].length);
+            positionFinders[i] = new TargetPositionFinder();
+            positionFinders[i].find(resources, worldStates[i].getOccupancyGrid(), playerView.getEntityPropertiesTable());
+        }
+        assignment = new int[maxBuilderCount];
+
+        otherMapCorners[0] = mapSize - 1;
+        otherMapCorners[1] = (mapSize - 1) * mapSize;
+        otherMapCorners[2] = mapSize * mapSize - 1;
+        incrementalField.reset(mapSize, 1);
+        updateField(incrementalField, resourceCells[0]);
+    }
+
+    private int getCell(Vec2Int position) {
+        return position.getX() + position.getY() * mapSize;
+    }
+
+    private int nextViewIndex() {
+        viewIndex = (viewIndex + 1) % playerViews.length;
+        return viewIndex;
+    }
+
+    private void updateField(DistanceField field, int[] cells) {
+        field.beginWeights();
+        for (int cell : cells) {
+            field.setWeight(cell % mapSize, cell / mapSize, MyStrategy.RESOURCE_DIST_WEIGHT);
+        }
+        field.endWeights();
+        field.setSources(otherMapCorners, otherMapCorners.length);
+        field.update(null);
+    }
+
+    @Override
+    public Action getAction() {
+        return myStrategy.getAction(playerViews[nextViewIndex()], null);
+    }
+
+    @Override
+    public void getActionAndWrite() throws IOException {
+        new ClientMessage.ActionMessage(myStrategy.getAction(playerViews[nextViewIndex()], null)).writeTo(outputStream);
+        outputStream.flush();
+    }
+
+    @Override
+    public void getActionStreamed() throws IOException {
+        actionWriter.reset();
+        myStrategy.getAction(playerViews[nextViewIndex()], null, actionWriter);
+        actionWriter.writeTo(outputStream);
+        outputStream.flush();
+    }
+
+    @Override
+    public Action getActionFirstTick() {
+        return new MyStrategy(1, TickProfiler.DISABLED, TimeBudget.unlimited()).getAction(playerViews[0], null);
+    }
+
+    @Override
+    public DistanceField distanceFieldIncremental() {
+        updateField(incrementalField, resourceCells[nextViewIndex()]);
+        return incrementalField;
+    }
+
+    @Override
+    public DistanceField distanceFieldFull() {
+        fullField.reset(mapSize, 1);
+        updateField(fullField, resourceCells[nextViewIndex()]);
+        return fullField;
+    }
+
+    @Override
+    public TargetPositionFinder findTargetPositions() {
+        int i = nextViewIndex();
+        positionFinder.find(worldStates[i].getResources(), worldStates[i].getOccupancyGrid(),
+                            playerViews[i].getEntityPropertiesTable());
+        return positionFinder;
+    }
+
+    @Override
+    public int assignBuilders() {
+        int i = nextViewIndex();
+        return assignmentSolver.solve(builderCells[i], builderCells[i].length,
+                                      positionFinders[i].getCells(), positionFinders[i].getCount(), mapSize,
+                                      builderCells[i].length, assignment, null);
+    }
+
+    @Override
+    public Vec2Int getClosestValidHousePositionToHouseBuilders() {
+        return myStrategy.getClosestValidHousePositionToHouseBuilders();
+    }
+}
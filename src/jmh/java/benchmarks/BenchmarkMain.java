@@ -0,0 +1,20 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// runs the benchmarks with the usual JMH command line, always with the gc profiler,
+// so every result comes with gc.alloc.rate and gc.alloc.rate.norm next to the time per operation
+public class BenchmarkMain {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                       .parent(new CommandLineOptions(args))
+                       .addProfiler(GCProfiler.class)
+                       .build())
+            .run();
+    }
+}
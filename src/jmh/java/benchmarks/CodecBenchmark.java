@@ -0,0 +1,98 @@
+package benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+import model.Action;
+import model.PlayerView;
+import model.PlayerViewReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.ByteBufferInputStream;
+import util.ByteBufferOutputStream;
+
+// decoding and encoding of the frames the runner exchanges with the server
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    // how far a generated view may be from the entity count asked for, the players' buildings come on top of it
+    public static final double ENTITY_COUNT_TOLERANCE = 0.1;
+
+    // map size and entity count, only pairs where the generator can place every entity
+    @Param({"80:1000", "160:4000", "256:40000"})
+    public String scale;
+
+    private byte[] playerViewBytes;
+    private PlayerView playerView;
+    private Action action;
+    // encodes into a reused buffer and drops the bytes
+    private ByteBufferOutputStream outputStream;
+
+    @Setup
+    public void setup() throws IOException {
+        String[] scaleParts = scale.split(":");
+        int mapSize = Integer.parseInt(scaleParts[0]);
+        int entityCount = Integer.parseInt(scaleParts[1]);
+        Fixtures fixtures = Fixtures.load();
+        playerView = fixtures.playerView(mapSize, entityCount);
+        // the generator stops placing entities once the map is full, results must not be reported under a count the view lacks
+        int generatedCount = playerView.getEntities().length;
+        if (Math.abs(generatedCount - entityCount) > entityCount * ENTITY_COUNT_TOLERANCE) {
+            throw new IllegalStateException("Scale " + scale + " generated " + generatedCount + " entities");
+        }
+        outputStream = new ByteBufferOutputStream(Channels.newChannel(OutputStream.nullOutputStream()),
+                                                  ByteBuffer.allocate(1 << 20));
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        playerView.writeTo(encoded);
+        playerViewBytes = encoded.toByteArray();
+        action = fixtures.getAction(playerView);
+    }
+
+    // the decoding mode only matters for reading, so the writes aren't run once per mode
+    @State(Scope.Benchmark)
+    public static class Decoding {
+        @Param({"false", "true"})
+        public boolean packedEntities;
+
+        private PlayerViewReader playerViewReader;
+
+        @Setup
+        public void setup() {
+            playerViewReader = new PlayerViewReader(packedEntities, false);
+        }
+    }
+
+    @Benchmark
+    public PlayerView readPlayerView(Decoding decoding) throws IOException {
+        return PlayerView.readFrom(new ByteBufferInputStream(ByteBuffer.wrap(playerViewBytes)), decoding.playerViewReader);
+    }
+
+    @Benchmark
+    public void writePlayerView() throws IOException {
+        playerView.writeTo(outputStream);
+        outputStream.flush();
+    }
+
+    @Benchmark
+    public void writeAction() throws IOException {
+        action.writeTo(outputStream);
+        outputStream.flush();
+    }
+}
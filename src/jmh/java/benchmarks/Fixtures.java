@@ -0,0 +1,27 @@
+package benchmarks;
+
+import model.Action;
+import model.PlayerView;
+
+// what the benchmarks need from the strategy, which is in the default package and can't be imported from here
+// implemented by BenchmarkFixtures in the default package, which is looked up by name
+public interface Fixtures {
+    String IMPLEMENTATION = "BenchmarkFixtures";
+
+    // a generated view of player 1, sized by map size and entity count and the same for every run
+    PlayerView playerView(int mapSize, int entityCount);
+
+    // the action a fresh MyStrategy computes for the view
+    Action getAction(PlayerView playerView);
+
+    // the stages of MyStrategy, run over the views of the first ticks of a played game
+    StrategyStages strategyStages(int mapSize, int entityCount, int tickCount);
+
+    static Fixtures load() {
+        try {
+            return (Fixtures) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No " + IMPLEMENTATION + " on the class path", e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import model.Action;
+import model.Vec2Int;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// MyStrategy.getAction end to end and its expensive stages on their own, over views of a played game
+// the stages are run by MyStrategyStages in the default package, see StrategyStages for what each one covers
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StrategyBenchmark {
+    public static final int PLAYED_TICKS = 32;
+
+    @Param({"80", "160"})
+    public int mapSize;
+
+    @Param({"1000", "4000"})
+    public int entityCount;
+
+    private StrategyStages stages;
+
+    @Setup
+    public void setup() {
+        stages = Fixtures.load().strategyStages(mapSize, entityCount, PLAYED_TICKS);
+    }
+
+    @Benchmark
+    public Action getAction() {
+        return stages.getAction();
+    }
+
+    @Benchmark
+    public void getActionAndWrite() throws IOException {
+        stages.getActionAndWrite();
+    }
+
+    @Benchmark
+    public void getActionStreamed() throws IOException {
+        stages.getActionStreamed();
+    }
+
+    @Benchmark
+    public Action getActionFirstTick() {
+        return stages.getActionFirstTick();
+    }
+
+    @Benchmark
+    public Object distanceFieldIncremental() {
+        return stages.distanceFieldIncremental();
+    }
+
+    @Benchmark
+    public Object distanceFieldFull() {
+        return stages.distanceFieldFull();
+    }
+
+    @Benchmark
+    public Object findTargetPositions() {
+        return stages.findTargetPositions();
+    }
+
+    @Benchmark
+    public int assignBuilders() {
+        return stages.assignBuilders();
+    }
+
+    @Benchmark
+    public Vec2Int getClosestValidHousePositionToHouseBuilders() {
+        return stages.getClosestValidHousePositionToHouseBuilders();
+    }
+}
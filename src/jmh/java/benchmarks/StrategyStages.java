@@ -0,0 +1,37 @@
+package benchmarks;
+
+import java.io.IOException;
+
+import model.Action;
+import model.Vec2Int;
+
+// MyStrategy.getAction end to end and its expensive stages on their own, each call moves on to the next view of the game
+// the stages that return strategy types return them as Object, only so the benchmark can consume them
+public interface StrategyStages {
+    // consecutive ticks of a game, the strategy only catches up on what changed since the previous view
+    Action getAction();
+
+    // the action built as objects and then encoded, as the runner sends it by default
+    void getActionAndWrite() throws IOException;
+
+    // the action encoded while it is computed, as the runner sends it with --stream-actions
+    void getActionStreamed() throws IOException;
+
+    // everything built from scratch, as on the first tick
+    Action getActionFirstTick();
+
+    // the distance field of getOtherMapCornerDistanceGrid, repaired for the resources of the next tick
+    Object distanceFieldIncremental();
+
+    // the same distance field rebuilt from scratch
+    Object distanceFieldFull();
+
+    // the free cells next to the resources, which replaced getTargetPositions
+    Object findTargetPositions();
+
+    // the matching at the core of assignBuildersToPositions, every builder to a position next to a resource
+    int assignBuilders();
+
+    // on the state left by the last view of the game
+    Vec2Int getClosestValidHousePositionToHouseBuilders();
+}
@@ -0,0 +1,228 @@
+import java.util.Arrays;
+
+// assigns workers to distinct targets minimizing the total manhattan distance, for at most a given number of workers
+// only the nearest candidates of each worker are considered, and the matching is grown one augmenting path
+// at a time (successive shortest paths with potentials), so every intermediate matching is optimal for its size
+// when the time budget runs out between two augmentations, the matching so far is kept and completed greedily
+public class AssignmentSolver {
+    public static final int UNASSIGNED = -1;
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    private final int candidatesPerWorker;
+
+    // candidate targets of worker w are candidates[w * candidatesPerWorker ..] with their costs
+    private int[] candidates = new int[0];
+    private int[] candidateCosts = new int[0];
+    private int[] candidateCounts = new int[0];
+
+    // nodes are the workers, then the targets, then the sink
+    private int[] workerTargets = new int[0];
+    private int[] targetWorkers = new int[0];
+    private int[] targetCosts = new int[0];
+    private int[] potentials = new int[0];
+    private int[] dist = new int[0];
+    private int[] parents = new int[0];
+    private boolean[] settled = new boolean[0];
+
+    // binary heap of (dist << 32 | node), stale entries are skipped when popped
+    private long[] heap = new long[16];
+    private int heapSize = 0;
+
+    public AssignmentSolver(int candidatesPerWorker) {
+        this.candidatesPerWorker = candidatesPerWorker;
+    }
+
+    // assignment[w] receives the index of the target of worker w, or UNASSIGNED; returns the number of assigned workers
+    // timeBudget may be null, then the matching is always grown to the limit
+    public int solve(int[] workerCells, int workerCount, int[] targetCells, int targetCount, int mapSize,
+                     int limit, int[] assignment, TimeBudget timeBudget) {
+        ensureCapacity(workerCount, targetCount);
+        limit = Math.min(limit, Math.min(workerCount, targetCount));
+        findCandidates(workerCells, workerCount, targetCells, targetCount, mapSize);
+
+        int nodeCount = workerCount + targetCount + 1;
+        Arrays.fill(workerTargets, 0, workerCount, UNASSIGNED);
+        Arrays.fill(targetWorkers, 0, targetCount, UNASSIGNED);
+        Arrays.fill(potentials, 0, nodeCount, 0);
+        int assignedCount = 0;
+        while (assignedCount < limit && (timeBudget == null || !timeBudget.isExpired()) && augment(workerCount, targetCount)) {
+            assignedCount++;
+        }
+
+        // workers whose candidates were all taken, or left over when the time ran out, fall back to the nearest free target
+        for (int w = 0; w < workerCount && assignedCount < limit; w++) {
+            if (workerTargets[w] != UNASSIGNED) continue;
+            int bestTarget = UNASSIGNED;
+            int bestCost = INF;
+            for (int t = 0; t < targetCount; t++) {
+                if (targetWorkers[t] != UNASSIGNED) continue;
+                int cost = manhattan(workerCells[w], targetCells[t], mapSize);
+                if (cost < bestCost) {
+                    bestTarget = t;
+                    bestCost = cost;
+                }
+            }
+            if (bestTarget == UNASSIGNED) break;
+            workerTargets[w] = bestTarget;
+            targetWorkers[bestTarget] = w;
+            assignedCount++;
+        }
+
+        System.arraycopy(workerTargets, 0, assignment, 0, workerCount);
+        return assignedCount;
+    }
+
+    private void ensureCapacity(int workerCount, int targetCount) {
+        if (candidateCounts.length < workerCount) {
+            candidates = new int[workerCount * candidatesPerWorker];
+            candidateCosts = new int[workerCount * candidatesPerWorker];
+            candidateCounts = new int[workerCount];
+            workerTargets = new int[workerCount];
+        }
+        if (targetWorkers.length < targetCount) {
+            targetWorkers = new int[targetCount];
+            targetCosts = new int[targetCount];
+        }
+        int nodeCount = workerCount + targetCount + 1;
+        if (potentials.length < nodeCount) {
+            potentials = new int[nodeCount];
+            dist = new int[nodeCount];
+            parents = new int[nodeCount];
+            settled = new boolean[nodeCount];
+        }
+    }
+
+    private static int manhattan(int cell1, int cell2, int mapSize) {
+        return Math.abs(cell1 % mapSize - cell2 % mapSize) + Math.abs(cell1 / mapSize - cell2 / mapSize);
+    }
+
+    // keeps the candidatesPerWorker nearest targets of every worker, sorted by cost, with an insertion pass per target
+    private void findCandidates(int[] workerCells, int workerCount, int[] targetCells, int targetCount, int mapSize) {
+        for (int w = 0; w < workerCount; w++) {
+            int start = w * candidatesPerWorker;
+            int count = 0;
+            for (int t = 0; t < targetCount; t++) {
+                int cost = manhattan(workerCells[w], targetCells[t], mapSize);
+                if (count == candidatesPerWorker && cost >= candidateCosts[start + count - 1]) continue;
+                int i = count == candidatesPerWorker ? count - 1 : count++;
+                while (i > 0 && candidateCosts[start + i - 1] > cost) {
+                    candidateCosts[start + i] = candidateCosts[start + i - 1];
+                    candidates[start + i] = candidates[start + i - 1];
+                    i--;
+                }
+                candidateCosts[start + i] = cost;
+                candidates[start + i] = t;
+            }
+            candidateCounts[w] = count;
+        }
+    }
+
+    // Dijkstra over reduced costs from every free worker to the sink, then flips the shortest path
+    private boolean augment(int workerCount, int targetCount) {
+        int sink = workerCount + targetCount;
+        Arrays.fill(dist, 0, sink + 1, INF);
+        Arrays.fill(settled, 0, sink + 1, false);
+        heapSize = 0;
+        for (int w = 0; w < workerCount; w++) {
+            if (workerTargets[w] == UNASSIGNED) {
+                dist[w] = 0;
+                parents[w] = UNASSIGNED;
+                heapPush(0, w);
+            }
+        }
+
+        while (heapSize > 0) {
+            long entry = heapPop();
+            int node = (int) entry;
+            if (settled[node]) continue;
+            settled[node] = true;
+            int nodeDist = (int) (entry >>> 32);
+            if (node == sink) break;
+
+            if (node < workerCount) {
+                int start = node * candidatesPerWorker;
+                for (int i = 0; i < candidateCounts[node]; i++) {
+                    int t = candidates[start + i];
+                    if (workerTargets[node] == t) continue;
+                    int target = workerCount + t;
+                    relax(node, target, nodeDist + candidateCosts[start + i] + potentials[node] - potentials[target]);
+                }
+            } else {
+                int t = node - workerCount;
+                int worker = targetWorkers[t];
+                if (worker == UNASSIGNED) {
+                    relax(node, sink, nodeDist + potentials[node] - potentials[sink]);
+                } else {
+                    relax(node, worker, nodeDist - targetCosts[t] + potentials[node] - potentials[worker]);
+                }
+            }
+        }
+        if (dist[sink] == INF) return false;
+
+        int sinkDist = dist[sink];
+        for (int node = 0; node <= sink; node++) {
+            potentials[node] += Math.min(dist[node], sinkDist);
+        }
+
+        // walk back from the sink, every target on the path takes the worker it was reached from
+        int target = parents[sink];
+        while (target != UNASSIGNED) {
+            int worker = parents[target];
+            int t = target - workerCount;
+            int previousTarget = workerTargets[worker];
+            targetWorkers[t] = worker;
+            workerTargets[worker] = t;
+            targetCosts[t] = costOf(worker, t);
+            target = previousTarget == UNASSIGNED ? UNASSIGNED : workerCount + previousTarget;
+        }
+        return true;
+    }
+
+    private int costOf(int worker, int t) {
+        int start = worker * candidatesPerWorker;
+        for (int i = 0; i < candidateCounts[worker]; i++) {
+            if (candidates[start + i] == t) return candidateCosts[start + i];
+        }
+        throw new IllegalStateException("Target " + t + " is not a candidate of worker " + worker);
+    }
+
+    private void relax(int from, int to, int toDist) {
+        if (!settled[to] && toDist < dist[to]) {
+            dist[to] = toDist;
+            parents[to] = from;
+            heapPush(toDist, to);
+        }
+    }
+
+    private void heapPush(int key, int node) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heap.length * 2);
+        }
+        long entry = ((long) key << 32) | node;
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= entry) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    private long heapPop() {
+        long top = heap[0];
+        long last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= last) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+}
@@ -0,0 +1,367 @@
+import java.util.Arrays;
+
+// multi-source shortest distances over the map grid, where entering a cell costs that cell's weight
+// weights are small positive integers, so a circular bucket queue (Dial's algorithm) replaces the heap
+// between updates only the cells whose weight changed are recorded, and update() repairs the affected region
+// a scan cut short by the time budget is resumed by the next update, until then the distances are upper bounds
+public class DistanceField {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+    // above this share of changed cells a full rebuild is cheaper than repairing
+    public static final int FULL_REBUILD_CHANGE_DIVISOR = 16;
+
+    private static final int[] DX = new int[] {0, 0, 1, -1};
+    private static final int[] DY = new int[] {1, -1, 0, 0};
+
+    private final int maxWeight;
+    private int mapSize = 0;
+    private int defaultWeight = 1;
+    private boolean valid = false;
+    // a scan was started and not finished, its queue and seeds are still in place
+    private boolean pending = false;
+
+    // indexed by x + y * mapSize
+    private int[] dist = new int[0];
+    private int[] weights = new int[0];
+    private int[] nextWeights = new int[0];
+    private boolean[] sources = new boolean[0];
+    private int[] sourceCells = new int[0];
+    private int sourceCount = 0;
+
+    // cells whose next weight may differ from the applied one
+    private boolean[] changeQueued = new boolean[0];
+    private int[] changedCells = new int[0];
+    private int changedCount = 0;
+
+    // cells holding a non-default next weight, and the round in which each was last set
+    private int[] weightedCells = new int[0];
+    private int weightedCount = 0;
+    private int[] weightRounds = new int[0];
+    private int weightRound = 0;
+
+    // scratch for invalidating the region that depended on cells that got more expensive
+    private int[] candidateRounds = new int[0];
+    private int[] invalidRounds = new int[0];
+    private int invalidRound = 0;
+    private int[] invalidCells = new int[0];
+
+    // bucket i holds the cells whose tentative distance is congruent to i modulo the bucket count
+    private final int[][] buckets;
+    private final int[] bucketSizes;
+    private int queuedCount = 0;
+    // starting points of a propagation, packed as (dist << 32 | cell) and sorted by distance
+    private long[] seeds = new long[16];
+    private int seedCount = 0;
+    private int seedIndex = 0;
+    private int scanDist = 0;
+
+    public DistanceField(int maxWeight) {
+        this.maxWeight = maxWeight;
+        this.buckets = new int[maxWeight + 1][16];
+        this.bucketSizes = new int[maxWeight + 1];
+    }
+
+    public int getMapSize() {
+        return mapSize;
+    }
+
+    public void reset(int mapSize, int defaultWeight) {
+        this.defaultWeight = defaultWeight;
+        if (mapSize != this.mapSize) {
+            this.mapSize = mapSize;
+            int cellCount = mapSize * mapSize;
+            dist = new int[cellCount];
+            weights = new int[cellCount];
+            nextWeights = new int[cellCount];
+            sources = new boolean[cellCount];
+            changeQueued = new boolean[cellCount];
+            changedCells = new int[cellCount];
+            weightedCells = new int[cellCount];
+            weightRounds = new int[cellCount];
+            candidateRounds = new int[cellCount];
+            invalidRounds = new int[cellCount];
+            invalidCells = new int[cellCount];
+        }
+        Arrays.fill(weights, defaultWeight);
+        Arrays.fill(nextWeights, defaultWeight);
+        Arrays.fill(sources, false);
+        Arrays.fill(changeQueued, false);
+        sourceCount = 0;
+        changedCount = 0;
+        weightedCount = 0;
+        valid = false;
+        pending = false;
+    }
+
+    // sources start at distance 0 regardless of their own weight
+    public void setSources(int[] cells, int count) {
+        if (count == sourceCount && Arrays.equals(cells, 0, count, sourceCells, 0, count)) return;
+        for (int i = 0; i < sourceCount; i++) {
+            sources[sourceCells[i]] = false;
+        }
+        sourceCells = Arrays.copyOf(cells, count);
+        sourceCount = count;
+        for (int i = 0; i < count; i++) {
+            sources[cells[i]] = true;
+        }
+        valid = false;
+    }
+
+    // every cell not given a weight between beginWeights and endWeights goes back to the default weight
+    public void beginWeights() {
+        weightRound++;
+    }
+
+    public void setWeight(int x, int y, int weight) {
+        if (weight < 1 || weight > maxWeight) {
+            throw new IllegalArgumentException("Weight " + weight + " is outside of [1, " + maxWeight + "]");
+        }
+        int cell = x + y * mapSize;
+        if (weight != defaultWeight && nextWeights[cell] == defaultWeight) {
+            weightedCells[weightedCount++] = cell;
+        }
+        weightRounds[cell] = weightRound;
+        setNextWeight(cell, weight);
+    }
+
+    public void endWeights() {
+        int keptCount = 0;
+        for (int i = 0; i < weightedCount; i++) {
+            int cell = weightedCells[i];
+            if (weightRounds[cell] != weightRound) {
+                setNextWeight(cell, defaultWeight);
+            }
+            if (nextWeights[cell] != defaultWeight) {
+                weightedCells[keptCount++] = cell;
+            }
+        }
+        weightedCount = keptCount;
+    }
+
+    private void setNextWeight(int cell, int weight) {
+        nextWeights[cell] = weight;
+        if (weight != weights[cell] && !changeQueued[cell]) {
+            changeQueued[cell] = true;
+            changedCells[changedCount++] = cell;
+        }
+    }
+
+    public int get(int x, int y) {
+        return dist[x + y * mapSize];
+    }
+
+    // true once every distance is exact
+    public boolean isComplete() {
+        return !pending;
+    }
+
+    // finishes a pending scan before taking the changes, timeBudget may be null to always run to completion
+    // returns isComplete()
+    public boolean update(TimeBudget timeBudget) {
+        if (pending && valid) {
+            if (!scan(timeBudget)) return false;
+        }
+        pending = false;
+        if (!valid || changedCount > dist.length / FULL_REBUILD_CHANGE_DIVISOR) {
+            applyWeights();
+            rebuild();
+        } else if (changedCount > 0) {
+            repair();
+        } else {
+            return true;
+        }
+        valid = true;
+        pending = !scan(timeBudget);
+        return !pending;
+    }
+
+    private void applyWeights() {
+        for (int i = 0; i < changedCount; i++) {
+            int cell = changedCells[i];
+            weights[cell] = nextWeights[cell];
+            changeQueued[cell] = false;
+        }
+        changedCount = 0;
+    }
+
+    private void rebuild() {
+        Arrays.fill(dist, UNREACHABLE);
+        seedCount = 0;
+        for (int i = 0; i < sourceCount; i++) {
+            dist[sourceCells[i]] = 0;
+            addSeed(sourceCells[i], 0);
+        }
+        startScan();
+    }
+
+    private void repair() {
+        int invalidCount = invalidate();
+        for (int i = 0; i < invalidCount; i++) {
+            dist[invalidCells[i]] = UNREACHABLE;
+        }
+
+        // the invalid region and the cells that got cheaper are re-entered from their neighbours
+        int changedCellCount = changedCount;
+        applyWeights();
+        seedCount = 0;
+        for (int i = 0; i < invalidCount; i++) {
+            seedFromNeighbours(invalidCells[i]);
+        }
+        for (int i = 0; i < changedCellCount; i++) {
+            int cell = changedCells[i];
+            if (!sources[cell] && invalidRounds[cell] != invalidRound) {
+                seedFromNeighbours(cell);
+            }
+        }
+        startScan();
+    }
+
+    // finds the cells whose distance depended on a cell that got more expensive, under the old weights
+    // candidates are visited in order of distance, so every parent is settled before its children,
+    // and a candidate keeps its distance when some parent that kept its own still leads to it
+    private int invalidate() {
+        invalidRound++;
+        int invalidCount = 0;
+        seedCount = 0;
+        for (int i = 0; i < changedCount; i++) {
+            int cell = changedCells[i];
+            if (nextWeights[cell] > weights[cell] && !sources[cell] && dist[cell] != UNREACHABLE) {
+                candidateRounds[cell] = invalidRound;
+                addSeed(cell, dist[cell]);
+            }
+        }
+        startScan();
+        for (int cell = poll(); cell != -1; cell = poll()) {
+            if (nextWeights[cell] <= weights[cell] && hasTightParent(cell)) continue;
+            invalidRounds[cell] = invalidRound;
+            invalidCells[invalidCount++] = cell;
+
+            int x = cell % mapSize;
+            int y = cell / mapSize;
+            for (int dir = 0; dir < 4; dir++) {
+                int childX = x + DX[dir];
+                int childY = y + DY[dir];
+                if (childX < 0 || childY < 0 || childX >= mapSize || childY >= mapSize) continue;
+                int child = childX + childY * mapSize;
+                if (sources[child] || candidateRounds[child] == invalidRound) continue;
+                if (dist[child] == dist[cell] + weights[child]) {
+                    candidateRounds[child] = invalidRound;
+                    push(child, dist[child]);
+                }
+            }
+        }
+        return invalidCount;
+    }
+
+    private boolean hasTightParent(int cell) {
+        int x = cell % mapSize;
+        int y = cell / mapSize;
+        for (int dir = 0; dir < 4; dir++) {
+            int parentX = x + DX[dir];
+            int parentY = y + DY[dir];
+            if (parentX < 0 || parentY < 0 || parentX >= mapSize || parentY >= mapSize) continue;
+            int parent = parentX + parentY * mapSize;
+            if (invalidRounds[parent] != invalidRound && dist[parent] != UNREACHABLE &&
+                dist[parent] + weights[cell] == dist[cell]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void seedFromNeighbours(int cell) {
+        int x = cell % mapSize;
+        int y = cell / mapSize;
+        int bestDist = dist[cell];
+        for (int dir = 0; dir < 4; dir++) {
+            int parentX = x + DX[dir];
+            int parentY = y + DY[dir];
+            if (parentX < 0 || parentY < 0 || parentX >= mapSize || parentY >= mapSize) continue;
+            int parentDist = dist[parentX + parentY * mapSize];
+            if (parentDist != UNREACHABLE && parentDist + weights[cell] < bestDist) {
+                bestDist = parentDist + weights[cell];
+            }
+        }
+        if (bestDist < dist[cell]) {
+            dist[cell] = bestDist;
+            addSeed(cell, bestDist);
+        }
+    }
+
+    private void addSeed(int cell, int cellDist) {
+        if (seedCount == seeds.length) {
+            seeds = Arrays.copyOf(seeds, seeds.length * 2);
+        }
+        seeds[seedCount++] = ((long) cellDist << 32) | cell;
+    }
+
+    private void push(int cell, int cellDist) {
+        int bucket = cellDist % buckets.length;
+        if (bucketSizes[bucket] == buckets[bucket].length) {
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], buckets[bucket].length * 2);
+        }
+        buckets[bucket][bucketSizes[bucket]++] = cell;
+        queuedCount++;
+    }
+
+    // the scan hands out queued cells in order of distance, each seed joins the queue once the scan reaches it
+    // everything pushed while scanning must lie within maxWeight of the current distance
+    private void startScan() {
+        Arrays.sort(seeds, 0, seedCount);
+        Arrays.fill(bucketSizes, 0);
+        queuedCount = 0;
+        seedIndex = 0;
+        scanDist = seedCount > 0 ? (int) (seeds[0] >>> 32) : 0;
+        queueSeeds();
+    }
+
+    private void queueSeeds() {
+        while (seedIndex < seedCount && (int) (seeds[seedIndex] >>> 32) == scanDist) {
+            push((int) seeds[seedIndex], scanDist);
+            seedIndex++;
+        }
+    }
+
+    // next queued cell, or -1 once the queue and the seeds are exhausted
+    private int poll() {
+        while (true) {
+            int bucket = scanDist % buckets.length;
+            if (bucketSizes[bucket] > 0) {
+                queuedCount--;
+                return buckets[bucket][--bucketSizes[bucket]];
+            }
+            if (queuedCount > 0) {
+                scanDist++;
+            } else if (seedIndex < seedCount) {
+                scanDist = (int) (seeds[seedIndex] >>> 32);
+            } else {
+                return -1;
+            }
+            queueSeeds();
+        }
+    }
+
+    // Dial's algorithm from the seeds, returns false when the time ran out before the queue did
+    private boolean scan(TimeBudget timeBudget) {
+        for (int polled = 1; ; polled++) {
+            if (timeBudget != null && polled % TimeBudget.CHECK_INTERVAL == 0 && timeBudget.isExpired()) return false;
+            int cell = poll();
+            if (cell == -1) return true;
+            // stale entry, the cell was reached more cheaply after it was queued
+            if (dist[cell] != scanDist) continue;
+
+            int x = cell % mapSize;
+            int y = cell / mapSize;
+            for (int dir = 0; dir < 4; dir++) {
+                int childX = x + DX[dir];
+                int childY = y + DY[dir];
+                if (childX < 0 || childY < 0 || childX >= mapSize || childY >= mapSize) continue;
+                int child = childX + childY * mapSize;
+                int childDist = scanDist + weights[child];
+                if (childDist < dist[child]) {
+                    dist[child] = childDist;
+                    push(child, childDist);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import java.util.Arrays;
+
+// cost of reaching the nearest goal cell from every cell of the map, and the neighbour to step into to get there
+// entering a cell costs its weight, blocked cells are never entered unless they are goals themselves
+public class FlowField {
+    public static final int BLOCKED = 0;
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+    public static final int NO_STEP = -1;
+
+    private static final int[] DX = new int[] {0, 0, 1, -1};
+    private static final int[] DY = new int[] {1, -1, 0, 0};
+
+    private int mapSize = 0;
+    private boolean breakThrough = false;
+    private int[] goalCells = new int[0];
+    private int goalCount = 0;
+
+    // indexed by x + y * mapSize
+    private int[] dist = new int[0];
+    private int[] nextSteps = new int[0];
+
+    // bucket i holds the cells whose tentative distance is congruent to i modulo the bucket count
+    private final int[][] buckets;
+    private final int[] bucketSizes;
+
+    public FlowField(int maxWeight) {
+        this.buckets = new int[maxWeight + 1][16];
+        this.bucketSizes = new int[maxWeight + 1];
+    }
+
+    public int getMapSize() {
+        return mapSize;
+    }
+
+    public boolean isBreakThrough() {
+        return breakThrough;
+    }
+
+    // goal cells are kept sorted, so two fields over the same set compare equal whatever order they came in
+    boolean hasGoals(int[] sortedGoalCells, int count) {
+        return count == goalCount && Arrays.equals(goalCells, 0, count, sortedGoalCells, 0, count);
+    }
+
+    public int getDist(int x, int y) {
+        return dist[x + y * mapSize];
+    }
+
+    // cell to move into from (x, y), NO_STEP on a goal or where no goal can be reached
+    public int getNextStep(int x, int y) {
+        return nextSteps[x + y * mapSize];
+    }
+
+    void compute(int mapSize, int[] weights, boolean breakThrough, int[] sortedGoalCells, int count) {
+        this.breakThrough = breakThrough;
+        if (mapSize != this.mapSize) {
+            this.mapSize = mapSize;
+            dist = new int[mapSize * mapSize];
+            nextSteps = new int[mapSize * mapSize];
+        }
+        if (goalCells.length < count) {
+            goalCells = new int[count];
+        }
+        System.arraycopy(sortedGoalCells, 0, goalCells, 0, count);
+        goalCount = count;
+
+        Arrays.fill(dist, UNREACHABLE);
+        Arrays.fill(nextSteps, NO_STEP);
+        Arrays.fill(bucketSizes, 0);
+        int queuedCount = 0;
+        for (int i = 0; i < count; i++) {
+            dist[goalCells[i]] = 0;
+            push(goalCells[i], 0);
+            queuedCount++;
+        }
+
+        // Dial's algorithm run backwards from the goals: a settled cell offers itself as the next step to its neighbours
+        for (int currentDist = 0; queuedCount > 0; currentDist++) {
+            int bucket = currentDist % buckets.length;
+            int[] cells = buckets[bucket];
+            while (bucketSizes[bucket] > 0) {
+                int cell = cells[--bucketSizes[bucket]];
+                queuedCount--;
+                // stale entry, the cell was reached more cheaply after it was queued
+                if (dist[cell] != currentDist) continue;
+
+                int enterCost = weights[cell] == BLOCKED ? 1 : weights[cell];
+                int x = cell % mapSize;
+                int y = cell / mapSize;
+                for (int dir = 0; dir < 4; dir++) {
+                    int fromX = x + DX[dir];
+                    int fromY = y + DY[dir];
+                    if (fromX < 0 || fromY < 0 || fromX >= mapSize || fromY >= mapSize) continue;
+                    int from = fromX + fromY * mapSize;
+                    if (weights[from] == BLOCKED) continue;
+                    int fromDist = currentDist + enterCost;
+                    if (fromDist < dist[from]) {
+                        dist[from] = fromDist;
+                        nextSteps[from] = cell;
+                        push(from, fromDist);
+                        queuedCount++;
+                    }
+                }
+            }
+        }
+    }
+
+    private void push(int cell, int cellDist) {
+        int bucket = cellDist % buckets.length;
+        if (bucketSizes[bucket] == buckets[bucket].length) {
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], buckets[bucket].length * 2);
+        }
+        buckets[bucket][bucketSizes[bucket]++] = cell;
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.EntityType;
+
+// flow fields over the current tick's occupancy, computed once per distinct goal set and shared by every unit heading there
+public class FlowFieldService {
+    private final int resourceWeight;
+
+    private int mapSize = 0;
+    // for units that break through resources, and for units that walk around them
+    private int[] breakThroughWeights = new int[0];
+    private int[] walkWeights = new int[0];
+
+    // fields are pooled across ticks, the first fieldCount of them belong to the current tick
+    private final List<FlowField> fields = new ArrayList<>();
+    private int fieldCount = 0;
+    private int[] sortedGoalCells = new int[16];
+
+    public FlowFieldService(int resourceWeight) {
+        this.resourceWeight = resourceWeight;
+    }
+
+    // units move through anything that moves, buildings block them and resources block units that can't break through
+    public void beginTick(OccupancyGrid occupancyGrid) {
+        if (occupancyGrid.getMapSize() != mapSize) {
+            mapSize = occupancyGrid.getMapSize();
+            breakThroughWeights = new int[mapSize * mapSize];
+            walkWeights = new int[mapSize * mapSize];
+        }
+        for (int y = 0; y < mapSize; y++) {
+            for (int x = 0; x < mapSize; x++) {
+                int cell = x + y * mapSize;
+                if (occupancyGrid.getLevel(x, y) != OccupancyGrid.IMMOVABLE) {
+                    breakThroughWeights[cell] = 1;
+                    walkWeights[cell] = 1;
+                } else if (occupancyGrid.getEntityTypeTag(cell) == EntityType.RESOURCE.tag) {
+                    breakThroughWeights[cell] = resourceWeight;
+                    walkWeights[cell] = FlowField.BLOCKED;
+                } else {
+                    breakThroughWeights[cell] = FlowField.BLOCKED;
+                    walkWeights[cell] = FlowField.BLOCKED;
+                }
+            }
+        }
+        fieldCount = 0;
+    }
+
+    public FlowField getField(int[] goalCells, int goalCount, boolean breakThrough) {
+        if (sortedGoalCells.length < goalCount) {
+            sortedGoalCells = new int[goalCount];
+        }
+        System.arraycopy(goalCells, 0, sortedGoalCells, 0, goalCount);
+        Arrays.sort(sortedGoalCells, 0, goalCount);
+
+        for (int i = 0; i < fieldCount; i++) {
+            if (fields.get(i).isBreakThrough() == breakThrough && fields.get(i).hasGoals(sortedGoalCells, goalCount)) {
+                return fields.get(i);
+            }
+        }
+        if (fieldCount == fields.size()) {
+            fields.add(new FlowField(resourceWeight));
+        }
+        FlowField field = fields.get(fieldCount++);
+        field.compute(mapSize, breakThrough ? breakThroughWeights : walkWeights, breakThrough, sortedGoalCells, goalCount);
+        return field;
+    }
+}
@@ -0,0 +1,694 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import model.Action;
+import model.AttackAction;
+import model.AttackProperties;
+import model.AutoAttack;
+import model.BuildAction;
+import model.BuildProperties;
+import model.Entity;
+import model.EntityAction;
+import model.EntityProperties;
+import model.EntityType;
+import model.MoveAction;
+import model.Player;
+import model.PlayerView;
+import model.RepairAction;
+import model.RepairProperties;
+import model.Vec2Int;
+
+// plays a game in-process without the game server, so whole games can run on CI with no network
+// every tick each bot gets its own PlayerView, and the actions are applied in the order of the game:
+// attacks (all damage lands at once), then builds, repairs and moves
+// an entity does one of them per tick, a unit that attacked, built or repaired doesn't move
+// a unit moving with breakThrough whose next step is a resource attacks it instead of stepping
+// views hold copies of the entities, nothing a bot does to them changes the game
+// the whole map is visible to everyone, fog of war is not simulated
+// entities act in order of id and paths are searched breadth first, so a game depends only on its seed and its bots
+public class LocalSimulator {
+    public static final int DEFAULT_MAP_SIZE = 80;
+    public static final int DEFAULT_MAX_TICK_COUNT = 1000;
+    public static final int DEFAULT_MAX_PATHFIND_NODES = 1000;
+    public static final int START_RESOURCE = 0;
+    public static final int START_BUILDERS = 5;
+    // resource cells per player, placed with the same symmetry as the players
+    public static final int RESOURCES_PER_PLAYER = 300;
+    // no resources are placed this close to a corner, the bases stand there
+    public static final int START_AREA_SIZE = 25;
+
+    // a player's side of the game, it gets its own copy of the view every tick
+    public interface Bot {
+        Action getAction(PlayerView playerView);
+    }
+
+    private static final int[] DX = new int[] {0, 0, 1, -1};
+    private static final int[] DY = new int[] {1, -1, 0, 0};
+
+    private final int mapSize;
+    private final int maxTickCount;
+    private final int maxPathfindNodes;
+    private final Map<EntityType, EntityProperties> entityProperties;
+    // what the views of each player hold instead, so a bot changing them changes neither the rules nor another bot's view
+    private final List<Map<EntityType, EntityProperties>> playerEntityProperties;
+    private final Player[] players;
+    private final Bot[] bots;
+
+    // alive entities in order of id, and the entity covering every cell
+    private List<Entity> entities = new ArrayList<>();
+    private final Map<Integer, Entity> entitiesById = new HashMap<>();
+    private final Entity[] cells;
+    private int nextEntityId = 1;
+    private int currentTick = 0;
+
+    // per tick scratch
+    private final Map<Integer, EntityAction> entityActions = new HashMap<>();
+    private final int[] damages;
+    private final Entity[] damageTargets;
+    private final Entity[] damageSources;
+    private int damageCount = 0;
+    // the entities that attacked, built or repaired this tick
+    private final Set<Integer> actedEntityIds = new HashSet<>();
+
+    // breadth first search scratch, a cell is visited when its round is the current one
+    private final int[] visitedRounds;
+    private final int[] parents;
+    private final int[] queue;
+    private int visitedRound = 0;
+
+    public LocalSimulator(int mapSize, int playerCount, int maxTickCount, Map<EntityType, EntityProperties> entityProperties) {
+        this.mapSize = mapSize;
+        this.maxTickCount = maxTickCount;
+        this.maxPathfindNodes = DEFAULT_MAX_PATHFIND_NODES;
+        this.entityProperties = entityProperties;
+        this.players = new Player[playerCount];
+        this.playerEntityProperties = new ArrayList<>(playerCount);
+        for (int i = 0; i < playerCount; i++) {
+            players[i] = new Player(i + 1, 0, START_RESOURCE);
+            playerEntityProperties.add(Collections.unmodifiableMap(copyEntityProperties(entityProperties)));
+        }
+        this.bots = new Bot[playerCount];
+        this.cells = new Entity[mapSize * mapSize];
+        this.damages = new int[mapSize * mapSize];
+        this.damageTargets = new Entity[mapSize * mapSize];
+        this.damageSources = new Entity[mapSize * mapSize];
+        this.visitedRounds = new int[mapSize * mapSize];
+        this.parents = new int[mapSize * mapSize];
+        this.queue = new int[mapSize * mapSize];
+    }
+
+    // a deep copy, made by encoding and decoding every entry
+    private static Map<EntityType, EntityProperties> copyEntityProperties(Map<EntityType, EntityProperties> entityProperties) {
+        Map<EntityType, EntityProperties> copy = new EnumMap<>(EntityType.class);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try {
+            for (Map.Entry<EntityType, EntityProperties> entry : entityProperties.entrySet()) {
+                encoded.reset();
+                entry.getValue().writeTo(encoded);
+                copy.put(entry.getKey(), EntityProperties.readFrom(new ByteArrayInputStream(encoded.toByteArray())));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return copy;
+    }
+
+    // the entity properties of the game rules
+    public static Map<EntityType, EntityProperties> defaultEntityProperties() {
+        EntityType[] buildings = new EntityType[] {
+            EntityType.HOUSE, EntityType.WALL, EntityType.BUILDER_BASE,
+            EntityType.MELEE_BASE, EntityType.RANGED_BASE, EntityType.TURRET
+        };
+        Map<EntityType, EntityProperties> properties = new EnumMap<>(EntityType.class);
+        properties.put(EntityType.WALL, new EntityProperties(1, 10, 10, false, 0, 0, 50, 10, 2, 0, null, null, null));
+        properties.put(EntityType.HOUSE, new EntityProperties(3, 50, 50, false, 5, 0, 50, 50, 5, 0, null, null, null));
+        properties.put(EntityType.BUILDER_BASE, new EntityProperties(5, 500, 500, false, 5, 0, 300, 500, 5, 0,
+            new BuildProperties(new EntityType[] {EntityType.BUILDER_UNIT}, null), null, null));
+        properties.put(EntityType.MELEE_BASE, new EntityProperties(5, 500, 500, false, 5, 0, 300, 500, 5, 0,
+            new BuildProperties(new EntityType[] {EntityType.MELEE_UNIT}, null), null, null));
+        properties.put(EntityType.RANGED_BASE, new EntityProperties(5, 500, 500, false, 5, 0, 300, 500, 5, 0,
+            new BuildProperties(new EntityType[] {EntityType.RANGED_UNIT}, null), null, null));
+        properties.put(EntityType.BUILDER_UNIT, new EntityProperties(1, 10, 10, true, 0, 1, 10, 10, 10, 0,
+            new BuildProperties(buildings, 1), new AttackProperties(1, 1, true), new RepairProperties(buildings, 1)));
+        properties.put(EntityType.MELEE_UNIT, new EntityProperties(1, 20, 20, true, 0, 1, 50, 20, 10, 0,
+            null, new AttackProperties(1, 5, false), null));
+        properties.put(EntityType.RANGED_UNIT, new EntityProperties(1, 30, 30, true, 0, 1, 10, 30, 10, 0,
+            null, new AttackProperties(5, 5, false), null));
+        properties.put(EntityType.RESOURCE, new EntityProperties(1, 0, 0, false, 0, 0, 30, 0, 0, 1, null, null, null));
+        properties.put(EntityType.TURRET, new EntityProperties(2, 50, 50, false, 0, 0, 100, 50, 10, 0,
+            null, new AttackProperties(5, 5, false), null));
+        return properties;
+    }
+
+    // players start in the corners, each with the three bases and a few builders, resources fill the rest of the map
+    public static LocalSimulator standardGame(long seed, int playerCount) {
+        if (playerCount < 1 || playerCount > 4) {
+            throw new IllegalArgumentException("Player count " + playerCount + " is outside of [1, 4]");
+        }
+        LocalSimulator simulator = new LocalSimulator(DEFAULT_MAP_SIZE, playerCount, DEFAULT_MAX_TICK_COUNT, defaultEntityProperties());
+        for (int i = 0; i < playerCount; i++) {
+            int playerId = i + 1;
+            simulator.addMirrored(playerId, i, EntityType.BUILDER_BASE, 5, 5, simulator.getMaxHealth(EntityType.BUILDER_BASE));
+            simulator.addMirrored(playerId, i, EntityType.MELEE_BASE, 5, 15, simulator.getMaxHealth(EntityType.MELEE_BASE));
+            simulator.addMirrored(playerId, i, EntityType.RANGED_BASE, 15, 5, simulator.getMaxHealth(EntityType.RANGED_BASE));
+            for (int j = 0; j < START_BUILDERS; j++) {
+                simulator.addMirrored(playerId, i, EntityType.BUILDER_UNIT, 10, 5 + j, simulator.getMaxHealth(EntityType.BUILDER_UNIT));
+            }
+        }
+        Random random = new Random(seed);
+        int resourceHealth = simulator.getMaxHealth(EntityType.RESOURCE);
+        int half = DEFAULT_MAP_SIZE / 2;
+        for (int k = 0; k < RESOURCES_PER_PLAYER; k++) {
+            int x = random.nextInt(half);
+            int y = random.nextInt(half);
+            if (x + y < START_AREA_SIZE) continue;
+            for (int corner = 0; corner < 4; corner++) {
+                simulator.addMirrored(null, corner, EntityType.RESOURCE, x, y, resourceHealth);
+            }
+        }
+        return simulator;
+    }
+
+    // a game of any size: every player gets a builder base in its corner and random units in its quarter,
+    // and resources are scattered over the free cells; counts that don't fit are cut short
+    public static LocalSimulator randomGame(long seed, int mapSize, int playerCount, int resourceCount, int unitsPerPlayer) {
+        if (playerCount < 1 || playerCount > 4) {
+            throw new IllegalArgumentException("Player count " + playerCount + " is outside of [1, 4]");
+        }
+        LocalSimulator simulator = new LocalSimulator(mapSize, playerCount, DEFAULT_MAX_TICK_COUNT, defaultEntityProperties());
+        EntityType[] unitTypes = new EntityType[] {EntityType.BUILDER_UNIT, EntityType.MELEE_UNIT, EntityType.RANGED_UNIT};
+        Random random = new Random(seed);
+        int quarter = Math.max(mapSize / 2, 1);
+        for (int i = 0; i < playerCount; i++) {
+            simulator.addMirrored(i + 1, i, EntityType.BUILDER_BASE, 0, 0, simulator.getMaxHealth(EntityType.BUILDER_BASE));
+            for (int k = 0, attempts = 0; k < unitsPerPlayer && attempts < 4 * quarter * quarter; attempts++) {
+                EntityType unitType = unitTypes[k % unitTypes.length];
+                int entityCount = simulator.entities.size();
+                simulator.addMirrored(i + 1, i, unitType, random.nextInt(quarter), random.nextInt(quarter), simulator.getMaxHealth(unitType));
+                if (simulator.entities.size() > entityCount) k++;
+            }
+        }
+        int resourceHealth = simulator.getMaxHealth(EntityType.RESOURCE);
+        for (int k = 0, attempts = 0; k < resourceCount && attempts < 4 * mapSize * mapSize; attempts++) {
+            int x = random.nextInt(mapSize);
+            int y = random.nextInt(mapSize);
+            if (simulator.isFree(x, y, 1)) {
+                simulator.add(null, EntityType.RESOURCE, new Vec2Int(x, y), resourceHealth);
+                k++;
+            }
+        }
+        return simulator;
+    }
+
+    public int getMapSize() { return mapSize; }
+    public int getCurrentTick() { return currentTick; }
+    public int getMaxTickCount() { return maxTickCount; }
+    public Player[] getPlayers() { return players; }
+    public List<Entity> getEntities() { return entities; }
+
+    public void setBot(int playerId, Bot bot) {
+        bots[playerId - 1] = bot;
+    }
+
+    private EntityProperties getProperties(EntityType entityType) {
+        return entityProperties.get(entityType);
+    }
+
+    private int getMaxHealth(EntityType entityType) {
+        return getProperties(entityType).getMaxHealth();
+    }
+
+    private int getSize(EntityType entityType) {
+        return getProperties(entityType).getSize();
+    }
+
+    // places the entity given for the first corner into another one, turned so that each player's bases face the center
+    private void addMirrored(Integer playerId, int corner, EntityType entityType, int x, int y, int health) {
+        int size = getSize(entityType);
+        int mirroredX = corner == 1 || corner == 3 ? mapSize - x - size : x;
+        int mirroredY = corner == 1 || corner == 2 ? mapSize - y - size : y;
+        if (isFree(mirroredX, mirroredY, size)) {
+            add(playerId, entityType, new Vec2Int(mirroredX, mirroredY), health);
+        }
+    }
+
+    // adds an entity on free cells, buildings below their max health stay inactive until repaired
+    public Entity add(Integer playerId, EntityType entityType, Vec2Int position, int health) {
+        Entity entity = new Entity(nextEntityId++, playerId, entityType, position, health,
+                                   health >= getMaxHealth(entityType) || getProperties(entityType).isCanMove());
+        entities.add(entity);
+        entitiesById.put(entity.getId(), entity);
+        fill(entity, entity);
+        return entity;
+    }
+
+    private void fill(Entity entity, Entity value) {
+        int size = getSize(entity.getEntityType());
+        for (int x = entity.getPosition().getX(); x < entity.getPosition().getX() + size; x++) {
+            for (int y = entity.getPosition().getY(); y < entity.getPosition().getY() + size; y++) {
+                cells[x + y * mapSize] = value;
+            }
+        }
+    }
+
+    private boolean isFree(int x, int y, int size) {
+        if (x < 0 || y < 0 || x + size > mapSize || y + size > mapSize) return false;
+        for (int i = x; i < x + size; i++) {
+            for (int j = y; j < y + size; j++) {
+                if (cells[i + j * mapSize] != null) return false;
+            }
+        }
+        return true;
+    }
+
+    private Player getPlayer(Integer playerId) {
+        return playerId == null ? null : players[playerId - 1];
+    }
+
+    // a game is over at its last tick, or when at most one player still has entities
+    public boolean isFinished() {
+        if (currentTick >= maxTickCount) return true;
+        int alivePlayers = 0;
+        boolean[] alive = new boolean[players.length];
+        for (Entity entity : entities) {
+            if (entity.getPlayerId() != null && !alive[entity.getPlayerId() - 1]) {
+                alive[entity.getPlayerId() - 1] = true;
+                alivePlayers++;
+            }
+        }
+        return alivePlayers <= 1 && players.length > 1;
+    }
+
+    // plays ticks until the game is over, returns the number of ticks played
+    public int run() {
+        int startTick = currentTick;
+        while (!isFinished()) {
+            tick();
+        }
+        return currentTick - startTick;
+    }
+
+    public PlayerView getPlayerView(int playerId) {
+        Player[] playerCopies = new Player[players.length];
+        for (int i = 0; i < players.length; i++) {
+            playerCopies[i] = new Player(players[i].getId(), players[i].getScore(), players[i].getResource());
+        }
+        Entity[] entityCopies = new Entity[entities.size()];
+        for (int i = 0; i < entityCopies.length; i++) {
+            Entity entity = entities.get(i);
+            entityCopies[i] = new Entity(entity.getId(), entity.getPlayerId(), entity.getEntityType(),
+                                         new Vec2Int(entity.getPosition().getX(), entity.getPosition().getY()),
+                                         entity.getHealth(), entity.isActive());
+        }
+        return new PlayerView(playerId, mapSize, false, playerEntityProperties.get(playerId - 1), maxTickCount, maxPathfindNodes,
+                              currentTick, playerCopies, entityCopies);
+    }
+
+    public void tick() {
+        entityActions.clear();
+        actedEntityIds.clear();
+        for (int i = 0; i < players.length; i++) {
+            if (bots[i] == null) continue;
+            Action action = bots[i].getAction(getPlayerView(players[i].getId()));
+            for (Map.Entry<Integer, EntityAction> entry : action.getEntityActions().entrySet()) {
+                Entity entity = entitiesById.get(entry.getKey());
+                // a bot can only order its own entities
+                if (entity != null && entry.getValue() != null && entity.getPlayerId() != null &&
+                    entity.getPlayerId() == players[i].getId()) {
+                    entityActions.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        applyAttacks();
+        applyBuilds();
+        applyRepairs();
+        applyMoves();
+        currentTick++;
+    }
+
+    // manhattan distance from a cell to the nearest cell of the entity
+    private int distance(int x, int y, Entity entity) {
+        int size = getSize(entity.getEntityType());
+        int entityX = entity.getPosition().getX();
+        int entityY = entity.getPosition().getY();
+        int dx = Math.max(Math.max(entityX - x, x - (entityX + size - 1)), 0);
+        int dy = Math.max(Math.max(entityY - y, y - (entityY + size - 1)), 0);
+        return dx + dy;
+    }
+
+    private static boolean contains(EntityType[] entityTypes, EntityType entityType) {
+        // an empty list allows every type
+        if (entityTypes.length == 0) return true;
+        for (EntityType candidate : entityTypes) {
+            if (candidate == entityType) return true;
+        }
+        return false;
+    }
+
+    private boolean isEnemy(Entity entity, Entity other) {
+        return other.getPlayerId() == null ? other.getEntityType() == EntityType.RESOURCE : !other.getPlayerId().equals(entity.getPlayerId());
+    }
+
+    // attack orders and auto attacks, turrets attack on their own
+    private void applyAttacks() {
+        damageCount = 0;
+        for (Entity entity : entities) {
+            AttackProperties attack = getProperties(entity.getEntityType()).getAttack();
+            if (attack == null || !entity.isActive()) continue;
+            EntityAction entityAction = entityActions.get(entity.getId());
+            AttackAction attackAction = entityAction == null ? null : entityAction.getAttackAction();
+            int x = entity.getPosition().getX();
+            int y = entity.getPosition().getY();
+            Entity target = null;
+            if (attackAction != null && attackAction.getTarget() != null) {
+                target = entitiesById.get(attackAction.getTarget());
+                if (target != null && (target == entity || distance(x, y, target) > attack.getAttackRange() ||
+                    target.getEntityType() == EntityType.RESOURCE && !attack.isCollectResource())) {
+                    target = null;
+                }
+            } else if (attackAction != null && attackAction.getAutoAttack() != null) {
+                target = findAutoAttackTarget(entity, attack, attackAction.getAutoAttack().getValidTargets(), attack.getAttackRange());
+            } else if (entity.getEntityType() == EntityType.TURRET) {
+                target = findAutoAttackTarget(entity, attack, new EntityType[0], attack.getAttackRange());
+            }
+            if (target != null) {
+                damageTargets[damageCount] = target;
+                damageSources[damageCount] = entity;
+                damages[damageCount++] = attack.getDamage();
+                actedEntityIds.add(entity.getId());
+            }
+        }
+
+        for (int i = 0; i < damageCount; i++) {
+            damage(damageSources[i], damageTargets[i], damages[i]);
+        }
+        removeDead();
+    }
+
+    private void damage(Entity source, Entity target, int damage) {
+        if (target.getHealth() <= 0) return;
+        damage = Math.min(damage, target.getHealth());
+        target.setHealth(target.getHealth() - damage);
+        Player attacker = getPlayer(source.getPlayerId());
+        EntityProperties targetProperties = getProperties(target.getEntityType());
+        if (attacker != null) {
+            attacker.setResource(attacker.getResource() + damage * targetProperties.getResourcePerHealth());
+            if (target.getHealth() == 0) {
+                attacker.setScore(attacker.getScore() + targetProperties.getDestroyScore());
+            }
+        }
+    }
+
+    private void removeDead() {
+        List<Entity> alive = new ArrayList<>(entities.size());
+        for (Entity entity : entities) {
+            if (entity.getHealth() > 0) {
+                alive.add(entity);
+            } else {
+                entitiesById.remove(entity.getId());
+                fill(entity, null);
+            }
+        }
+        entities = alive;
+    }
+
+    // nearest valid target within the range, ties go to the lower id
+    // cells are scanned in rings of growing manhattan distance, so a near target is found without looking at the rest
+    private Entity findAutoAttackTarget(Entity entity, AttackProperties attack, EntityType[] validTargets, int range) {
+        int x = entity.getPosition().getX();
+        int y = entity.getPosition().getY();
+        range = Math.min(range, 2 * mapSize);
+        for (int dist = 1; dist <= range; dist++) {
+            Entity best = null;
+            for (int dx = -dist; dx <= dist; dx++) {
+                int cellX = x + dx;
+                if (cellX < 0 || cellX >= mapSize) continue;
+                int dy = dist - Math.abs(dx);
+                best = pickTarget(entity, attack, validTargets, cellX, y - dy, best);
+                if (dy != 0) {
+                    best = pickTarget(entity, attack, validTargets, cellX, y + dy, best);
+                }
+            }
+            if (best != null) return best;
+        }
+        return null;
+    }
+
+    private Entity pickTarget(Entity entity, AttackProperties attack, EntityType[] validTargets, int x, int y, Entity best) {
+        if (y < 0 || y >= mapSize) return best;
+        Entity other = cells[x + y * mapSize];
+        if (other == null || other.getHealth() <= 0 || !isEnemy(entity, other)) return best;
+        if (other.getEntityType() == EntityType.RESOURCE && !attack.isCollectResource()) return best;
+        if (!contains(validTargets, other.getEntityType())) return best;
+        // without explicit targets, nobody harvests by accident
+        if (validTargets.length == 0 && other.getEntityType() == EntityType.RESOURCE) return best;
+        return best == null || other.getId() < best.getId() ? other : best;
+    }
+
+    private int getPopulationProvided(int playerId) {
+        int population = 0;
+        for (Entity entity : entities) {
+            if (entity.isActive() && entity.getPlayerId() != null && entity.getPlayerId() == playerId) {
+                population += getProperties(entity.getEntityType()).getPopulationProvide();
+            }
+        }
+        return population;
+    }
+
+    private int getPopulationUsed(int playerId) {
+        int population = 0;
+        for (Entity entity : entities) {
+            if (entity.getPlayerId() != null && entity.getPlayerId() == playerId) {
+                population += getProperties(entity.getEntityType()).getPopulationUse();
+            }
+        }
+        return population;
+    }
+
+    // units get more expensive with every unit of their type the player already has
+    private int getCost(int playerId, EntityType entityType) {
+        EntityProperties properties = getProperties(entityType);
+        if (!properties.isCanMove()) return properties.getInitialCost();
+        int count = 0;
+        for (Entity entity : entities) {
+            if (entity.getEntityType() == entityType && entity.getPlayerId() != null && entity.getPlayerId() == playerId) {
+                count++;
+            }
+        }
+        return properties.getInitialCost() + count;
+    }
+
+    private void applyBuilds() {
+        int entityCount = entities.size();
+        for (int i = 0; i < entityCount; i++) {
+            Entity entity = entities.get(i);
+            EntityAction entityAction = entityActions.get(entity.getId());
+            BuildAction buildAction = entityAction == null ? null : entityAction.getBuildAction();
+            BuildProperties build = getProperties(entity.getEntityType()).getBuild();
+            if (buildAction == null || build == null || !entity.isActive()) continue;
+            EntityType entityType = buildAction.getEntityType();
+            Vec2Int position = buildAction.getPosition();
+            if (entityType == null || position == null || !contains(build.getOptions(), entityType)) continue;
+
+            int playerId = entity.getPlayerId();
+            Player player = getPlayer(playerId);
+            EntityProperties properties = getProperties(entityType);
+            int size = properties.getSize();
+            int cost = getCost(playerId, entityType);
+            if (player.getResource() < cost || !isFree(position.getX(), position.getY(), size)) continue;
+            if (!isAdjacent(entity, position, size)) continue;
+            if (properties.getPopulationUse() > 0 &&
+                getPopulationUsed(playerId) + properties.getPopulationUse() > getPopulationProvided(playerId)) continue;
+
+            player.setResource(player.getResource() - cost);
+            actedEntityIds.add(entity.getId());
+            int health = build.getInitHealth() == null ? properties.getMaxHealth() : build.getInitHealth();
+            add(playerId, entityType, position, health);
+            if (health >= properties.getMaxHealth()) {
+                player.setScore(player.getScore() + properties.getBuildScore());
+            }
+        }
+    }
+
+    // whether the footprints of the entity and of a new entity of the given size at the position touch by a side
+    private boolean isAdjacent(Entity entity, Vec2Int position, int size) {
+        int entitySize = getSize(entity.getEntityType());
+        int x0 = entity.getPosition().getX();
+        int y0 = entity.getPosition().getY();
+        int x1 = position.getX();
+        int y1 = position.getY();
+        boolean overlapX = x1 < x0 + entitySize && x0 < x1 + size;
+        boolean overlapY = y1 < y0 + entitySize && y0 < y1 + size;
+        boolean touchX = x1 + size == x0 || x0 + entitySize == x1;
+        boolean touchY = y1 + size == y0 || y0 + entitySize == y1;
+        return overlapX && touchY || overlapY && touchX;
+    }
+
+    private void applyRepairs() {
+        for (Entity entity : entities) {
+            EntityAction entityAction = entityActions.get(entity.getId());
+            RepairAction repairAction = entityAction == null ? null : entityAction.getRepairAction();
+            RepairProperties repair = getProperties(entity.getEntityType()).getRepair();
+            if (repairAction == null || repair == null) continue;
+            Entity target = entitiesById.get(repairAction.getTarget());
+            if (target == null || !entity.getPlayerId().equals(target.getPlayerId()) ||
+                !contains(repair.getValidTargets(), target.getEntityType()) ||
+                distance(entity.getPosition().getX(), entity.getPosition().getY(), target) != 1) continue;
+            EntityProperties targetProperties = getProperties(target.getEntityType());
+            if (target.getHealth() >= targetProperties.getMaxHealth()) continue;
+            actedEntityIds.add(entity.getId());
+            target.setHealth(Math.min(target.getHealth() + repair.getPower(), targetProperties.getMaxHealth()));
+            if (target.getHealth() == targetProperties.getMaxHealth() && !target.isActive()) {
+                target.setActive(true);
+                Player player = getPlayer(target.getPlayerId());
+                player.setScore(player.getScore() + targetProperties.getBuildScore());
+            }
+        }
+    }
+
+    // every unit steps at most one cell, onto a cell that is free at that moment
+    // auto attackers with no move order walk towards targets within their pathfind range
+    // resources broken through are removed once every unit has moved, so their cells free up on the next tick
+    private void applyMoves() {
+        boolean brokeThrough = false;
+        for (Entity entity : entities) {
+            if (!getProperties(entity.getEntityType()).isCanMove() || actedEntityIds.contains(entity.getId())) continue;
+            EntityAction entityAction = entityActions.get(entity.getId());
+            if (entityAction == null) continue;
+            MoveAction moveAction = entityAction.getMoveAction();
+            Vec2Int target = moveAction == null ? null : moveAction.getTarget();
+            boolean findClosestPosition = moveAction != null && moveAction.isFindClosestPosition();
+            boolean breakThrough = moveAction != null && moveAction.isBreakThrough();
+            AttackAction attackAction = entityAction.getAttackAction();
+            AttackProperties attack = getProperties(entity.getEntityType()).getAttack();
+            if (target == null && attackAction != null && attackAction.getAutoAttack() != null && attack != null) {
+                AutoAttack autoAttack = attackAction.getAutoAttack();
+                Entity autoTarget = findAutoAttackTarget(entity, attack, autoAttack.getValidTargets(),
+                                                         attack.getAttackRange() + autoAttack.getPathfindRange());
+                if (autoTarget == null || distance(entity.getPosition().getX(), entity.getPosition().getY(), autoTarget) <= attack.getAttackRange()) {
+                    continue;
+                }
+                target = autoTarget.getPosition();
+                findClosestPosition = true;
+            }
+            if (target == null) continue;
+
+            int step = findFirstStep(entity, target, findClosestPosition, breakThrough);
+            if (step == -1) continue;
+            Entity obstacle = cells[step];
+            if (obstacle != null) {
+                if (breakThrough && attack != null && obstacle.getEntityType() == EntityType.RESOURCE) {
+                    damage(entity, obstacle, attack.getDamage());
+                    brokeThrough = true;
+                }
+                continue;
+            }
+            fill(entity, null);
+            entity.setPosition(new Vec2Int(step % mapSize, step / mapSize));
+            fill(entity, entity);
+        }
+        if (brokeThrough) {
+            removeDead();
+        }
+    }
+
+    private boolean isPassable(int cell, boolean breakThrough) {
+        Entity entity = cells[cell];
+        return entity == null || getProperties(entity.getEntityType()).isCanMove() ||
+            breakThrough && entity.getEntityType() == EntityType.RESOURCE;
+    }
+
+    // first cell of a shortest path from the unit to the target, searching at most maxPathfindNodes cells
+    // other units don't block the search, they only keep the unit from stepping onto their cell this tick
+    // with findClosestPosition an unreachable target is replaced by the visited cell nearest to it
+    private int findFirstStep(Entity entity, Vec2Int target, boolean findClosestPosition, boolean breakThrough) {
+        int start = entity.getPosition().getX() + entity.getPosition().getY() * mapSize;
+        int targetX = Math.min(Math.max(target.getX(), 0), mapSize - 1);
+        int targetY = Math.min(Math.max(target.getY(), 0), mapSize - 1);
+        int targetCell = targetX + targetY * mapSize;
+        if (start == targetCell) return -1;
+
+        visitedRound++;
+        visitedRounds[start] = visitedRound;
+        parents[start] = -1;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        int closest = start;
+        int closestDist = Math.abs(start % mapSize - targetX) + Math.abs(start / mapSize - targetY);
+        int found = -1;
+        while (head < tail && tail < maxPathfindNodes) {
+            int cell = queue[head++];
+            if (cell == targetCell) {
+                found = cell;
+                break;
+            }
+            int x = cell % mapSize;
+            int y = cell / mapSize;
+            for (int dir = 0; dir < 4; dir++) {
+                int nextX = x + DX[dir];
+                int nextY = y + DY[dir];
+                if (nextX < 0 || nextY < 0 || nextX >= mapSize || nextY >= mapSize) continue;
+                int next = nextX + nextY * mapSize;
+                if (visitedRounds[next] == visitedRound || !isPassable(next, breakThrough) && next != targetCell) continue;
+                visitedRounds[next] = visitedRound;
+                parents[next] = cell;
+                queue[tail++] = next;
+                int dist = Math.abs(nextX - targetX) + Math.abs(nextY - targetY);
+                if (dist < closestDist) {
+                    closest = next;
+                    closestDist = dist;
+                }
+            }
+        }
+        if (found == -1) {
+            if (!findClosestPosition || closest == start) return -1;
+            found = closest;
+        }
+        while (parents[found] != start) {
+            found = parents[found];
+        }
+        return found;
+    }
+
+    // plays one game of MyStrategy against idle players: [seed] [player count]
+    public static void main(String[] args) {
+        long seed = args.length < 1 ? 0 : Long.parseLong(args[0]);
+        int playerCount = args.length < 2 ? 4 : Integer.parseInt(args[1]);
+        LocalSimulator simulator = standardGame(seed, playerCount);
+        MyStrategy myStrategy = new MyStrategy();
+        simulator.setBot(1, playerView -> myStrategy.getAction(playerView, null));
+
+        long startNanos = System.nanoTime();
+        int ticks = simulator.run();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%d ticks in %.2f s (%.0f ticks/s)%n", ticks, seconds, ticks / seconds);
+        for (Player player : simulator.getPlayers()) {
+            System.out.printf("player %d: score %d, resource %d%n", player.getId(), player.getScore(), player.getResource());
+        }
+        System.out.println(Arrays.toString(countEntities(simulator, 1)));
+    }
+
+    private static int[] countEntities(LocalSimulator simulator, int playerId) {
+        int[] counts = new int[EntityType.values().length];
+        for (Entity entity : simulator.getEntities()) {
+            if (entity.getPlayerId() != null && entity.getPlayerId() == playerId) {
+                counts[entity.getEntityType().tag]++;
+            }
+        }
+        return counts;
+    }
+}
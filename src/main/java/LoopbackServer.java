@@ -0,0 +1,204 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.Action;
+import model.ClientMessage;
+import model.PlayerView;
+import model.ServerMessage;
+import util.ByteBufferInputStream;
+import util.ByteBufferOutputStream;
+import util.StreamUtil;
+
+// a local stand-in for the game server, to measure the protocol round trip of a Runner on one box
+// it accepts one connection, reads the token, then sends GetAction frames and times every one until its ActionMessage is read back
+// frames come either from a LocalSimulator game sized by the options, where the client plays player 1,
+// or from a file holding the server's side of a game as written by ServerMessage.writeTo
+public class LoopbackServer {
+    static class Options {
+        int port = 31001;
+        long seed = 0;
+        int mapSize = LocalSimulator.DEFAULT_MAP_SIZE;
+        int playerCount = 4;
+        int resourceCount = 1200;
+        int unitsPerPlayer = 60;
+        int tickCount = LocalSimulator.DEFAULT_MAX_TICK_COUNT;
+        // replay the GetAction frames of this file instead of simulating, null to simulate
+        String framesPath = null;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int split = arg.indexOf('=');
+                if (!arg.startsWith("--") || split == -1) {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+                String name = arg.substring(2, split);
+                String value = arg.substring(split + 1);
+                if (name.equals("port")) {
+                    options.port = Integer.parseInt(value);
+                } else if (name.equals("seed")) {
+                    options.seed = Long.parseLong(value);
+                } else if (name.equals("map-size")) {
+                    options.mapSize = Integer.parseInt(value);
+                } else if (name.equals("players")) {
+                    options.playerCount = Integer.parseInt(value);
+                } else if (name.equals("resources")) {
+                    options.resourceCount = Integer.parseInt(value);
+                } else if (name.equals("units")) {
+                    options.unitsPerPlayer = Integer.parseInt(value);
+                } else if (name.equals("ticks")) {
+                    options.tickCount = Integer.parseInt(value);
+                } else if (name.equals("frames")) {
+                    options.framesPath = value;
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            return options;
+        }
+    }
+
+    private final InputStream inputStream;
+    private final OutputStream outputStream;
+    private final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+    private long[] roundTripNanos = new long[1024];
+    private long[] frameBytes = new long[1024];
+    private int frameCount = 0;
+
+    LoopbackServer(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        inputStream = new ByteBufferInputStream(socket.getInputStream());
+        outputStream = new ByteBufferOutputStream(socket.getOutputStream());
+    }
+
+    String readToken() throws IOException {
+        return StreamUtil.readString(inputStream);
+    }
+
+    // sends the frame and waits for the action, the frame is encoded before the clock starts
+    Action exchange(PlayerView playerView) throws IOException {
+        frame.reset();
+        new ServerMessage.GetAction(playerView, false).writeTo(frame);
+        return exchange(frame.toByteArray());
+    }
+
+    Action exchange(byte[] getActionFrame) throws IOException {
+        long startNanos = System.nanoTime();
+        outputStream.write(getActionFrame);
+        outputStream.flush();
+        ClientMessage message = ClientMessage.readFrom(inputStream);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        if (!(message instanceof ClientMessage.ActionMessage)) {
+            throw new IOException("Unexpected client message");
+        }
+        if (frameCount == roundTripNanos.length) {
+            roundTripNanos = Arrays.copyOf(roundTripNanos, frameCount * 2);
+            frameBytes = Arrays.copyOf(frameBytes, frameCount * 2);
+        }
+        roundTripNanos[frameCount] = elapsedNanos;
+        frameBytes[frameCount++] = getActionFrame.length;
+        return ((ClientMessage.ActionMessage) message).getAction();
+    }
+
+    void finish() throws IOException {
+        new ServerMessage.Finish().writeTo(outputStream);
+        outputStream.flush();
+    }
+
+    void playSimulated(Options options) throws IOException {
+        LocalSimulator simulator = LocalSimulator.randomGame(options.seed, options.mapSize, options.playerCount,
+                                                             options.resourceCount, options.unitsPerPlayer);
+        simulator.setBot(1, playerView -> {
+            try {
+                return exchange(playerView);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        for (int tick = 0; tick < options.tickCount && !simulator.isFinished(); tick++) {
+            simulator.tick();
+        }
+    }
+
+    void playRecorded(String framesPath) throws IOException {
+        for (byte[] getActionFrame : readGetActionFrames(framesPath)) {
+            exchange(getActionFrame);
+        }
+    }
+
+    // the GetAction frames of a recorded server stream, re-encoded one by one
+    static List<byte[]> readGetActionFrames(String framesPath) throws IOException {
+        List<byte[]> frames = new ArrayList<>();
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(framesPath))) {
+            ByteArrayOutputStream frame = new ByteArrayOutputStream();
+            while (true) {
+                ServerMessage message;
+                try {
+                    message = ServerMessage.readFrom(stream);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (message instanceof ServerMessage.Finish) break;
+                if (message instanceof ServerMessage.GetAction) {
+                    frame.reset();
+                    message.writeTo(frame);
+                    frames.add(frame.toByteArray());
+                }
+            }
+        }
+        return frames;
+    }
+
+    void printSummary() {
+        long[] sortedNanos = Arrays.copyOf(roundTripNanos, frameCount);
+        Arrays.sort(sortedNanos);
+        long totalBytes = 0;
+        long totalNanos = 0;
+        for (int i = 0; i < frameCount; i++) {
+            totalBytes += frameBytes[i];
+            totalNanos += roundTripNanos[i];
+        }
+        System.out.printf("%d frames, %.1f KiB per frame on average%n", frameCount, frameCount == 0 ? 0.0 : totalBytes / 1024.0 / frameCount);
+        System.out.printf("round trip us: p50 %.1f, p99 %.1f, max %.1f, mean %.1f%n",
+                          percentile(sortedNanos, 50) / 1000.0,
+                          percentile(sortedNanos, 99) / 1000.0,
+                          percentile(sortedNanos, 100) / 1000.0,
+                          frameCount == 0 ? 0.0 : totalNanos / 1000.0 / frameCount);
+    }
+
+    // nearest-rank percentile of sorted samples
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options = Options.parse(args);
+        try (ServerSocket serverSocket = new ServerSocket(options.port)) {
+            System.out.println("Waiting for a runner on port " + options.port);
+            try (Socket socket = serverSocket.accept()) {
+                LoopbackServer server = new LoopbackServer(socket);
+                System.out.println("Connected with token " + server.readToken());
+                if (options.framesPath == null) {
+                    server.playSimulated(options);
+                } else {
+                    server.playRecorded(options.framesPath);
+                }
+                server.finish();
+                server.printSummary();
+            }
+        }
+    }
+}
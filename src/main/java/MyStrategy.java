@@ -1,5 +1,7 @@
 import model.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class MyStrategy {
     public static final int PROJECT_ENTITY_ID = -1;
@@ -12,28 +14,111 @@ public class MyStrategy {
     public static final int MAX_TOTAL_HOUSE_DIST_FROM_HOUSE_BUILDERS = 30;
     public static final int MAX_NUM_HOUSE_PROJECTS = 2;
     public static final int NUM_ENEMY_TARGETS = 5;
+    // nearest target positions each builder is matched against
+    public static final int BUILDER_TARGET_CANDIDATES = 16;
+    public static final int SPATIAL_INDEX_BUCKET_SIZE = 8;
     public static final Vec2Int ATTACKER_MEETING_POINT = new Vec2Int(25, 25); // not used
+    // valid targets of the auto attacks, shared by every emitted action
+    private static final EntityType[] RESOURCE_TARGETS = new EntityType[] {EntityType.RESOURCE};
+    private static final EntityType[] ANY_TARGETS = new EntityType[0];
+    // resource health is 30, unit attack is 5, 30/5 + 1 (for final move) is 7
+    public static final int RESOURCE_DIST_WEIGHT = 7;
+    // below this many entities the actions are computed on the calling thread
+    public static final int MIN_PARALLEL_ENTITIES = 64;
+    public static final int ENTITIES_PER_ACTION_TASK = 16;
+    // time the game gives the bot for all of its ticks
+    public static final long GAME_TIME_BUDGET_MILLIS = 40_000;
+
+    // phases of a tick for the TickProfiler, the runner marks the last one after sending the action
+    public static final int PHASE_ENTITIES = 0;
+    public static final int PHASE_DISTANCE_FIELD = 1;
+    public static final int PHASE_HOUSE_PROJECTS = 2;
+    public static final int PHASE_TARGET_POSITIONS = 3;
+    public static final int PHASE_BUILDER_ASSIGNMENT = 4;
+    public static final int PHASE_ATTACKER_ASSIGNMENT = 5;
+    public static final int PHASE_FLOW_FIELDS = 6;
+    public static final int PHASE_ACTIONS = 7;
+    public static final int PHASE_SEND = 8;
+    public static final String[] PROFILER_PHASES = new String[] {
+        "entities", "distance_field", "house_projects", "target_positions",
+        "builder_assignment", "attacker_assignment", "flow_fields", "actions", "send"
+    };
+    // the pipelined runner marks the last phase once the action is handed to its I/O thread, which sends it later
+    public static final String[] PIPELINED_PROFILER_PHASES = new String[] {
+        "entities", "distance_field", "house_projects", "target_positions",
+        "builder_assignment", "attacker_assignment", "flow_fields", "actions", "handoff"
+    };
 
     private int myId = -1;
-    private Map<EntityType, EntityProperties> entityProperties = null;
+    private EntityPropertiesTable entityProperties = null;
 
     private PlayerView playerView = null;
-
-    private Entity[][] entityMap = null;
-    private int[][] distFromOtherMapCorners = null;
-
-    private EnumMap<EntityType, List<Entity>> myEntities = new EnumMap<>(EntityType.class);
-    private EnumMap<EntityType, List<Entity>> enemyEntities = new EnumMap<>(EntityType.class);
-    private List<Entity> resources = new ArrayList<>();
+    private final TimeBudget timeBudget;
+    private final TickProfiler profiler;
+
+    // created on the first tick, the grid, index and entity lists below are the ones it maintains
+    private WorldState worldState = null;
+    private OccupancyGrid occupancyGrid = null;
+    private SpatialIndex spatialIndex = null;
+    private List<Entity> nearestEntities = new ArrayList<>();
+    private DistanceField distFromOtherMapCorners = new DistanceField(RESOURCE_DIST_WEIGHT);
+    private int[] otherMapCorners = new int[3];
+    private FlowFieldService flowFields = new FlowFieldService(RESOURCE_DIST_WEIGHT);
+    private int[] goalCells = new int[16];
+    // the field towards each of enemyTargets, null where there is no target
+    private final FlowField[] enemyTargetFields = new FlowField[NUM_ENEMY_TARGETS];
+    private FlowField meetingPointField = null;
+    private FlowField oppositeEndOfMapField = null;
+
+    private EnumMap<EntityType, List<Entity>> myEntities = null;
+    private EnumMap<EntityType, List<Entity>> enemyEntities = null;
+    private List<Entity> resources = null;
     private List<Entity> buildProjects = new ArrayList<>();
     private List<Entity> repairProjects = new ArrayList<>();
 
+    private TargetPositionFinder projectPositionFinder = new TargetPositionFinder();
+    private TargetPositionFinder resourcePositionFinder = new TargetPositionFinder();
+    // assignments persist across ticks, along with the position finder each target came from
     private Map<Integer, Vec2Int> builderTargetPositions = new HashMap<>();
-    private Map<Integer, Vec2Int> attackersToTargetPositions = new HashMap<>();
+    private Map<Integer, Integer> builderTargetKinds = new HashMap<>();
+    private int[] takenCellRounds = new int[0];
+    private int takenCellRound = 0;
+    private int[] freePositionCells = new int[0];
+    private AssignmentSolver assignmentSolver = new AssignmentSolver(BUILDER_TARGET_CANDIDATES);
+    private List<Entity> unassignedBuilders = new ArrayList<>();
+    private int[] builderCells = new int[0];
+    private int[] builderAssignment = new int[0];
+    private Map<Integer, Entity> attackerTargets = new HashMap<>();
+    private Entity[] enemyTargets = new Entity[NUM_ENEMY_TARGETS];
 
     private int populationAvailable = 0;
     private int populationUsed = 0;
 
+    // null when actions are computed serially
+    private final ForkJoinPool actionPool;
+    private List<Entity> actionEntities = new ArrayList<>();
+    private ActionSink[] actionSegments = new ActionSink[0];
+
+    public MyStrategy() {
+        this(1);
+    }
+
+    public MyStrategy(int actionThreads) {
+        this(actionThreads, TickProfiler.DISABLED);
+    }
+
+    // the profiler's ticks are started and ended by the caller, getAction only marks the phases
+    public MyStrategy(int actionThreads, TickProfiler profiler) {
+        this(actionThreads, profiler, new TimeBudget(GAME_TIME_BUDGET_MILLIS));
+    }
+
+    public MyStrategy(int actionThreads, TickProfiler profiler, TimeBudget timeBudget) {
+        this.profiler = profiler;
+        this.timeBudget = timeBudget;
+        // fork-join workers are daemon threads, so the pool never keeps the runner alive
+        this.actionPool = actionThreads > 1 ? new ForkJoinPool(actionThreads) : null;
+    }
+
 
     // HELPER METHODS
 
@@ -50,21 +135,11 @@ public class MyStrategy {
     }
 
     private boolean isRepairable(EntityType entityType) {
-        for (EntityType type : entityProperties.get(EntityType.BUILDER_UNIT).getRepair().getValidTargets()) {
-            if (type == entityType) {
-                return true;
-            }
-        }
-        return false;
+        return entityProperties.isRepairable(entityType);
     }
 
     private boolean isAttacker(EntityType entityType) {
-        EntityProperties properties = entityProperties.get(entityType);
-        return properties.getAttack() != null && properties.isCanMove() && entityType != EntityType.BUILDER_UNIT;
-    }
-
-    private Vec2Int getOrigin() {
-        return new Vec2Int(0, 0);
+        return entityProperties.isAttacker(entityType);
     }
 
     private int getPositionHash(Vec2Int position) {
@@ -88,19 +163,6 @@ public class MyStrategy {
         return Math.abs(pos1.getX() - pos2.getX()) + Math.abs(pos1.getY() - pos2.getY());
     }
 
-    private Entity getClosestEntityToOrigin(List<Entity> entities) {
-        int closestDistFromOrigin = Integer.MAX_VALUE;
-        Entity closestEntityToOrigin = null;
-        for (Entity entity : entities) {
-            int distFromOrigin = dist(entity.getPosition(), getOrigin());
-            if (distFromOrigin < closestDistFromOrigin) {
-                closestEntityToOrigin = entity;
-                closestDistFromOrigin = distFromOrigin;
-            }
-        }
-        return closestEntityToOrigin;
-    }
-
     private boolean isProjectEntity(Entity entity) {
         return entity.getId() == PROJECT_ENTITY_ID;
     }
@@ -113,19 +175,6 @@ public class MyStrategy {
         return isValidCoords(position.getX(), position.getY());
     }
 
-    private List<Vec2Int> getAdjacentPositions(Vec2Int position, int size) {
-        List<Vec2Int> adjacentPositions = new ArrayList<>();
-        int x = position.getX();
-        int y = position.getY();
-        for (int diff = 0; diff < size; diff++) {
-            adjacentPositions.add(new Vec2Int(x + diff, y - 1));
-            adjacentPositions.add(new Vec2Int(x - 1, y + diff));
-            adjacentPositions.add(new Vec2Int(x + diff, y + size));
-            adjacentPositions.add(new Vec2Int(x + size, y + diff));
-        }
-        return adjacentPositions;
-    }
-
 
     // SETUP METHODS
 
@@ -141,47 +190,38 @@ public class MyStrategy {
         return (int)Math.ceil((populationAvailable - getExpectedNumBuilders()) * PERCENT_OF_ATTACKERS_MELEE_UNITS);
     }
 
-    private void getAllEntities(Entity[] entities) {
-        for (Entity entity : entities) {
-            EntityType entityType = entity.getEntityType();
-            EntityProperties properties = entityProperties.get(entityType);
+    private void countPopulation(EntityType entityType, int health, int sign) {
+        EntityProperties properties = entityProperties.get(entityType);
+        if (health == properties.getMaxHealth()) {
+            populationAvailable += sign * properties.getPopulationProvide();
+        }
+        populationUsed += sign * properties.getPopulationUse();
+    }
+
+    private void getAllEntities(PlayerView playerView) {
+        // only the entities that changed since the last tick are looked at
+        worldState.ingest(playerView);
+        for (Entity entity : worldState.getRemoved()) {
             if (isMyEntity(entity)) {
-                if (entity.getHealth() == properties.getMaxHealth()) {
-                    populationAvailable += properties.getPopulationProvide();
-                }
-                populationUsed += properties.getPopulationUse();
-                if (!myEntities.containsKey(entityType)) {
-                    myEntities.put(entityType, new ArrayList<Entity>());
-                }
-                myEntities.get(entityType).add(entity);
-
-                if (isRepairable(entityType)) {
-                    for (int i = 0; i < projects.size(); ++i) {
-                        if (dist(entity.getPosition(), projects.get(i).getPosition()) == 0 &&
-                            entityType == projects.get(i).getEntityType()) {
-                            projects.set(i, entity);
-                        }
-                    }
-                }
-            } else if (entityType == EntityType.RESOURCE) {
-                resources.add(entity);
-            } else {
-                if (!enemyEntities.containsKey(entityType)) {
-                    enemyEntities.put(entityType, new ArrayList<Entity>());
-                }
-                enemyEntities.get(entityType).add(entity);
+                countPopulation(entity.getEntityType(), entity.getHealth(), -1);
+                builderTargetPositions.remove(entity.getId());
+                builderTargetKinds.remove(entity.getId());
+                attackerTargets.remove(entity.getId());
             }
-
-            Vec2Int entityPos = entity.getPosition();
-            int x = entityPos.getX();
-            int y = entityPos.getY();
-            entityMap[x][y] = entity;
-            int size = properties.getSize();
-            if (size > 1) {
-                for (int xDiff = 0; xDiff < size; xDiff++) {
-                    for (int yDiff = 0; yDiff < size; yDiff++) {
-                        entityMap[x + xDiff][y + yDiff] = entity;
-                    }
+        }
+        List<Entity> damaged = worldState.getDamaged();
+        for (int i = 0; i < damaged.size(); i++) {
+            Entity entity = damaged.get(i);
+            if (isMyEntity(entity)) {
+                countPopulation(entity.getEntityType(), worldState.getPreviousHealth(i), -1);
+                countPopulation(entity.getEntityType(), entity.getHealth(), 1);
+            }
+        }
+        for (Entity entity : worldState.getAdded()) {
+            if (isMyEntity(entity)) {
+                countPopulation(entity.getEntityType(), entity.getHealth(), 1);
+                if (isRepairable(entity.getEntityType())) {
+                    replaceProject(entity);
                 }
             }
         }
@@ -203,69 +243,37 @@ public class MyStrategy {
         //     int y = project.getPosition().getY();
         // }
     }
-    
-    class Point implements Comparable<Point> {
-        int x, y, dist;
-        public Point(int x, int y, int dist) {
-            this.x = x;
-            this.y = y;
-            this.dist = dist;
-        }
-        public int compareTo(Point o) {
-            if (dist != o.dist) {
-                return dist - o.dist;
+
+    // a project becomes the building once it is placed, the world state keeps that entity up to date from then on
+    private void replaceProject(Entity entity) {
+        for (int i = 0; i < projects.size(); ++i) {
+            if (dist(entity.getPosition(), projects.get(i).getPosition()) == 0 &&
+                entity.getEntityType() == projects.get(i).getEntityType()) {
+                projects.set(i, entity);
             }
-            return (x * 1000 + y) - (o.x * 1000 + o.y);
-        }
-        public boolean equals(Object o) {
-            return x == ((Point)o).x && y == ((Point)o).y;
         }
     }
-
+    
     private void getOtherMapCornerDistanceGrid() {
         int mapSize = playerView.getMapSize();
-        boolean[][] visited = new boolean[mapSize][mapSize];
-        distFromOtherMapCorners = new int[mapSize][mapSize];
-        PriorityQueue<Point> toVisit = new PriorityQueue<Point>();
-        Point[] otherMapCorners = new Point[] {new Point(mapSize - 1, 0, 0),
-                                               new Point(0, mapSize - 1, 0),
-                                               new Point(mapSize - 1, mapSize - 1, 0)};
-        int[][] diff = new int[][] {
-            new int[] {0, 1},
-            new int[] {0, -1},
-            new int[] {1, 0},
-            new int[] {-1, 0}
-        };
-        for (Point p : otherMapCorners) {
-            toVisit.add(p);
-            distFromOtherMapCorners[p.x][p.y] = p.dist;
-        }
-        while (!toVisit.isEmpty()) {
-            Point node = toVisit.remove();
-            visited[node.x][node.y] = true;
-
-            for (int dir = 0; dir < 4; dir++) {
-                int x = node.x + diff[dir][0];
-                int y = node.y + diff[dir][1];
-                if (isValidCoords(x, y) && !visited[x][y]) {
-                    // resource health is 30, unit attack is 5, 30/5 + 1 (for final move) is 7
-                    int distDiff = entityMap[x][y] != null && entityMap[x][y].getEntityType() == EntityType.RESOURCE ? 7 : 1;
-                    Point child = new Point(x, y, node.dist + distDiff);
-                    boolean alreadyAdded = toVisit.contains(child);
-                    if (!alreadyAdded || child.dist < distFromOtherMapCorners[x][y]) {
-                        if (alreadyAdded) {
-                            toVisit.remove(new Point(x, y, distFromOtherMapCorners[x][y]));
-                        }
-                        distFromOtherMapCorners[x][y] = child.dist;
-                        toVisit.add(child);
-                    }
-                }
-            }
-        }
+        if (distFromOtherMapCorners.getMapSize() != mapSize) {
+            distFromOtherMapCorners.reset(mapSize, 1);
+        }
+        // only resources that appeared or disappeared since the last tick are repaired
+        distFromOtherMapCorners.beginWeights();
+        for (Entity resource : resources) {
+            distFromOtherMapCorners.setWeight(resource.getPosition().getX(), resource.getPosition().getY(), RESOURCE_DIST_WEIGHT);
+        }
+        distFromOtherMapCorners.endWeights();
+        otherMapCorners[0] = occupancyGrid.getCell(mapSize - 1, 0);
+        otherMapCorners[1] = occupancyGrid.getCell(0, mapSize - 1);
+        otherMapCorners[2] = occupancyGrid.getCell(mapSize - 1, mapSize - 1);
+        distFromOtherMapCorners.setSources(otherMapCorners, otherMapCorners.length);
+        distFromOtherMapCorners.update(timeBudget);
         // if (playerView.getCurrentTick() == 200) {
-        //     for (int[] a : distFromOtherMapCorners) {
-        //         for (int b : a) {
-        //             System.out.print(b + " ");
+        //     for (int x = 0; x < mapSize; x++) {
+        //         for (int y = 0; y < mapSize; y++) {
+        //             System.out.print(distFromOtherMapCorners.get(x, y) + " ");
         //         }
         //         System.out.println();
         //     }
@@ -275,23 +283,7 @@ public class MyStrategy {
     private int getOccupiedLevel(int x, int y, int size) {
         // 0 for nothing, 1 for might move eventually, and 2 for occupied by something that can't move
         if (!isValidCoords(x, y)) return 0;
-
-        if (size == 1) {
-            if (entityMap[x][y] == null) return 0;
-            if (entityProperties.get(entityMap[x][y].getEntityType()).isCanMove()) return 1;
-            return 2;
-        }
-
-        int maxOccupiedLevel = 0;
-        for (int xDiff = 0; xDiff < size; ++xDiff) {
-            for (int yDiff = 0; yDiff < size; ++yDiff) {
-                maxOccupiedLevel = Math.max(maxOccupiedLevel, getOccupiedLevel(x + xDiff, y + yDiff, 1));
-                if (maxOccupiedLevel == 2) {
-                    return 2;
-                }
-            }
-        }
-        return maxOccupiedLevel;
+        return occupancyGrid.getLevel(x, y, size);
     }
 
     private boolean isValidHousePosition(Vec2Int position) {
@@ -310,21 +302,20 @@ public class MyStrategy {
         return false;
     }
 
-    private Vec2Int getClosestValidHousePositionToHouseBuilders() {
+    // package-private for the benchmarks, valid after getAction
+    Vec2Int getClosestValidHousePositionToHouseBuilders() {
         if (myEntities.get(EntityType.BUILDER_UNIT).size() < NUM_HOUSE_BUILDERS) return null;
 
-        List<Entity> builders = new ArrayList<>();
-        List<Entity> houseBuilders = new ArrayList<>();
-        builders.addAll(myEntities.get(EntityType.BUILDER_UNIT));
-        for (int i = 0; i < NUM_HOUSE_BUILDERS; i++) {
-            Entity houseBuilder = getClosestEntityToOrigin(builders);
-            builders.remove(houseBuilder);
-            houseBuilders.add(houseBuilder);
-        }
+        List<Entity> houseBuilders = spatialIndex.getNearest(0, 0, NUM_HOUSE_BUILDERS,
+                                                             SpatialIndex.typeMask(EntityType.BUILDER_UNIT),
+                                                             SpatialIndex.OWNER_ME,
+                                                             nearestEntities);
 
+        // diagonals nearest to the origin come first, when the time runs out the best position so far is taken
         int minDist = Integer.MAX_VALUE;
         Vec2Int housePosition = null;
         for (int l = 0; l < playerView.getMapSize() * 2 / 3; l++) {
+            if (housePosition != null && timeBudget.isExpired()) break;
             for (int x = 0; x <= l; x++) {
                 Vec2Int position = new Vec2Int(x, l - x);
                 if (isValidHousePosition(position)) {
@@ -342,79 +333,70 @@ public class MyStrategy {
         return housePosition;
     }
 
-    private List<Vec2Int> getTargetPositions(List<Entity> targetEntities) {
+    // builders keep their position while it is still a target of the same kind and nobody else took it,
+    // the others are matched to the positions left, and earlier kinds may take builders from later ones
+    private void assignBuildersToPositions(TargetPositionFinder[] positionFinders, Integer[] assignLimits) {
+        List<Entity> builders = myEntities.getOrDefault(EntityType.BUILDER_UNIT, new ArrayList<>());
         int mapSize = playerView.getMapSize();
-        int[][] positionFreq = new int[mapSize][mapSize];
-        for (Entity entity : targetEntities) {
-            int entitySize = getEntityProperties(entity).getSize();
-            for (Vec2Int adjacentPosition : getAdjacentPositions(entity.getPosition(), entitySize)) {
-                if (isValidPosition(adjacentPosition) && getOccupiedLevel(adjacentPosition.getX(), adjacentPosition.getY(), 1) <= 1) {
-                    positionFreq[adjacentPosition.getX()][adjacentPosition.getY()]++;
-                }
-            }
+        if (takenCellRounds.length != mapSize * mapSize) {
+            takenCellRounds = new int[mapSize * mapSize];
         }
+        takenCellRound++;
 
-        List<Vec2Int> targetPositions = new ArrayList<>();
-        for (int x = 0; x < mapSize; x++) {
-            for (int y = 0; y < mapSize; y++) {
-                if (positionFreq[x][y] > 0 && positionFreq[x][y] < 3) {
-                    targetPositions.add(new Vec2Int(x, y));
+        for (int i = 0; i < positionFinders.length; i++) {
+            TargetPositionFinder positionFinder = positionFinders[i];
+            int limit = assignLimits[i] == null ? Integer.MAX_VALUE : assignLimits[i];
+            int keptCount = 0;
+            unassignedBuilders.clear();
+            for (Entity builder : builders) {
+                Integer kind = builderTargetKinds.get(builder.getId());
+                if (kind != null && kind < i) continue;
+                if (kind != null && kind == i) {
+                    int cell = getPositionHash(builderTargetPositions.get(builder.getId()));
+                    if (keptCount < limit && positionFinder.contains(cell) && takenCellRounds[cell] != takenCellRound) {
+                        takenCellRounds[cell] = takenCellRound;
+                        keptCount++;
+                        continue;
+                    }
+                    builderTargetPositions.remove(builder.getId());
+                    builderTargetKinds.remove(builder.getId());
                 }
+                unassignedBuilders.add(builder);
             }
-        }
-        return targetPositions;
-    }
-
-    class Edge implements Comparable<Edge> {
-        public int dist;
-        public Entity builder;
-        public Vec2Int targetPosition;
-        public Edge(Entity builder, Vec2Int targetPosition) {
-            this.builder = builder;
-            this.targetPosition = targetPosition;
-            this.dist = dist(builder.getPosition(), targetPosition);
-        }
-        public int compareTo(MyStrategy.Edge o) {
-            return this.dist - o.dist;
-        }
-    }
 
-    private void assignBuildersToPositions(List<Vec2Int>[] positionLists, Integer[] assignLimits) {
-        List<Entity> builders = new ArrayList<>();
-        builders.addAll(myEntities.getOrDefault(EntityType.BUILDER_UNIT, new ArrayList<>()));
-        for (int i = 0; i < positionLists.length; i++) {
-            List<Vec2Int> positions = positionLists[i];
-            List<Edge> edges = new ArrayList<>();
-            for (Entity builder : builders) {
-                if (builderTargetPositions.containsKey(builder.getId())) continue;
-                for (Vec2Int pos : positions) {
-                    edges.add(new Edge(builder, pos));
+            int builderCount = unassignedBuilders.size();
+            int[] positionCells = positionFinder.getCells();
+            int positionCount = 0;
+            if (freePositionCells.length < positionFinder.getCount()) {
+                freePositionCells = new int[positionFinder.getCount()];
+            }
+            for (int j = 0; j < positionFinder.getCount(); j++) {
+                if (takenCellRounds[positionCells[j]] != takenCellRound) {
+                    freePositionCells[positionCount++] = positionCells[j];
                 }
             }
-            Collections.sort(edges);
-
-            Set<Integer> assignedPositions = new HashSet<>();
-            Set<Entity> assignedBuilders = new HashSet<>();
-            for (Edge e : edges) {
-                if (assignLimits[i] != null && assignedBuilders.size() >= assignLimits[i]) break;
-
-                int builderId = e.builder.getId();
-                int positionHash = getPositionHash(e.targetPosition);
-                if (builderTargetPositions.containsKey(builderId) || assignedPositions.contains(positionHash)) continue;
-                builderTargetPositions.put(builderId, e.targetPosition);
-                assignedPositions.add(positionHash);
-                assignedBuilders.add(e.builder);
+            if (builderCount == 0 || positionCount == 0 || keptCount >= limit) continue;
+
+            if (builderCells.length < builderCount) {
+                builderCells = new int[builderCount];
+                builderAssignment = new int[builderCount];
+            }
+            for (int j = 0; j < builderCount; j++) {
+                builderCells[j] = getPositionHash(unassignedBuilders.get(j).getPosition());
             }
-            builders.removeAll(assignedBuilders);
-        }
-    }
 
-    private List<Entity> getAllEnemies() {
-        List<Entity> allEnemies = new ArrayList<>();
-        for (Map.Entry<EntityType, List<Entity>> enemyTypeListEntry : enemyEntities.entrySet()) {
-            allEnemies.addAll(enemyTypeListEntry.getValue());
+            assignmentSolver.solve(builderCells, builderCount, freePositionCells, positionCount, mapSize,
+                                   Math.min(limit - keptCount, builderCount), builderAssignment, timeBudget);
+            for (int j = 0; j < builderCount; j++) {
+                if (builderAssignment[j] != AssignmentSolver.UNASSIGNED) {
+                    int cell = freePositionCells[builderAssignment[j]];
+                    int builderId = unassignedBuilders.get(j).getId();
+                    takenCellRounds[cell] = takenCellRound;
+                    builderTargetPositions.put(builderId, new Vec2Int(cell % mapSize, cell / mapSize));
+                    builderTargetKinds.put(builderId, i);
+                }
+            }
         }
-        return allEnemies;
     }
 
     private List<Entity> getAllAttackers() {
@@ -428,20 +410,25 @@ public class MyStrategy {
     }
 
     private void assignAttackersToEnemies() {
-        Entity[] targets = new Entity[NUM_ENEMY_TARGETS];
-        List<Entity> potentialEnemyTargets = getAllEnemies();
-        for (int i = 0; i < NUM_ENEMY_TARGETS; i++) {
-            targets[i] = getClosestEntityToOrigin(potentialEnemyTargets);
-            potentialEnemyTargets.remove(targets[i]);
+        Entity[] targets = enemyTargets;
+        List<Entity> closestEnemies = spatialIndex.getNearest(0, 0, NUM_ENEMY_TARGETS,
+                                                              SpatialIndex.ALL_TYPES,
+                                                              SpatialIndex.OWNER_ENEMY,
+                                                              nearestEntities);
+        for (int i = 0; i < closestEnemies.size(); i++) {
+            targets[i] = closestEnemies.get(i);
         }
 
+        // attackers stay on their target while it is one of the current ones, the others take the closest
         for (Entity attacker : getAllAttackers()) {
+            if (isEnemyTarget(attackerTargets.get(attacker.getId()))) continue;
+            attackerTargets.remove(attacker.getId());
             int minDist = Integer.MAX_VALUE;
             for (int i = 0; i < NUM_ENEMY_TARGETS; i++) {
                 if (targets[i] != null) {
                     int newDist = dist(attacker.getPosition(), targets[i].getPosition());
                     if (newDist < minDist) {
-                        attackersToTargetPositions.put(attacker.getId(), targets[i].getPosition());
+                        attackerTargets.put(attacker.getId(), targets[i]);
                         minDist = newDist;
                     }
                 }
@@ -449,6 +436,14 @@ public class MyStrategy {
         }
     }
 
+    private boolean isEnemyTarget(Entity entity) {
+        if (entity == null) return false;
+        for (Entity target : enemyTargets) {
+            if (target == entity) return true;
+        }
+        return false;
+    }
+
     private boolean houseProjectExists(Vec2Int houseProjectPosition) {
         for (Entity project : projects) {
             if (dist(project.getPosition(), houseProjectPosition) == 0) {
@@ -472,175 +467,273 @@ public class MyStrategy {
     }
 
 
+    // a field towards every cell the entity covers
+    private FlowField getFlowField(Entity goalEntity, boolean breakThrough) {
+        int x = goalEntity.getPosition().getX();
+        int y = goalEntity.getPosition().getY();
+        int size = entityProperties.getSize(goalEntity.getEntityType());
+        if (goalCells.length < size * size) {
+            goalCells = Arrays.copyOf(goalCells, Math.max(goalCells.length * 2, size * size));
+        }
+        int goalCount = 0;
+        for (int yDiff = 0; yDiff < size; yDiff++) {
+            for (int xDiff = 0; xDiff < size; xDiff++) {
+                goalCells[goalCount++] = occupancyGrid.getCell(x + xDiff, y + yDiff);
+            }
+        }
+        return flowFields.getField(goalCells, goalCount, breakThrough);
+    }
+
+    private FlowField getFlowField(Vec2Int goalPosition, boolean breakThrough) {
+        if (!isValidPosition(goalPosition)) return null;
+        goalCells[0] = getPositionHash(goalPosition);
+        return flowFields.getField(goalCells, 1, breakThrough);
+    }
+
+    // computed before any unit action, so the actions themselves only look up their next step
+    private void computeFlowFields() {
+        flowFields.beginTick(occupancyGrid);
+        // one field per target, so every attacker heads for the enemy it was assigned
+        for (int i = 0; i < NUM_ENEMY_TARGETS; i++) {
+            enemyTargetFields[i] = enemyTargets[i] == null ? null : getFlowField(enemyTargets[i], true);
+        }
+        meetingPointField = getFlowField(ATTACKER_MEETING_POINT, false);
+        oppositeEndOfMapField = getFlowField(new Vec2Int(playerView.getMapSize() - 1, playerView.getMapSize() - 1), false);
+    }
+
+    private FlowField getEnemyTargetField(Entity target) {
+        for (int i = 0; i < NUM_ENEMY_TARGETS; i++) {
+            if (enemyTargets[i] == target) return enemyTargetFields[i];
+        }
+        return null;
+    }
+
+    // moves one step along the flow field, or lets the server find the path when the field has no step to offer
+    private void emitFlowFieldMove(ActionSink actionSink, FlowField field, Vec2Int position, Vec2Int target, boolean breakThrough) {
+        int nextStep = field == null ? FlowField.NO_STEP : field.getNextStep(position.getX(), position.getY());
+        if (nextStep == FlowField.NO_STEP) {
+            actionSink.move(target.getX(), target.getY(), true, breakThrough);
+            return;
+        }
+        int mapSize = playerView.getMapSize();
+        actionSink.move(nextStep % mapSize, nextStep / mapSize, true, breakThrough);
+    }
+
+
     // UNIT ACTIONS
 
-    private EntityAction getAutoBuildRepairAction(Entity builder) {
+    private void emitAutoBuildRepairAction(Entity builder, ActionSink actionSink) {
         for (Entity project : projects) {
             if (isAdjacent(builder.getPosition(), project.getPosition(), getEntityProperties(project).getSize())) {
-                return new EntityAction(null,
-                                        new BuildAction(project.getEntityType(),
-                                                        project.getPosition()),
-                                        null,
-                                        // check if the project has been built (thereby making it no longer a project)
-                                        (isProjectEntity(project)) ? null : new RepairAction(project.getId()));
+                actionSink.build(project.getEntityType(), project.getPosition().getX(), project.getPosition().getY());
+                // check if the project has been built (thereby making it no longer a project)
+                if (!isProjectEntity(project)) {
+                    actionSink.repair(project.getId());
+                }
+                return;
             }
         }
-        return new EntityAction();
     }
 
-    private EntityAction getBuilderUnitAction(Entity builder) {
+    private void emitBuilderUnitAction(Entity builder, ActionSink actionSink) {
         // move to target resource if one exists
         Vec2Int targetPosition = builderTargetPositions.get(builder.getId());
         if (targetPosition != null) {
             // don't want to accidentally auto attack or build anything else before getting to position
             if (dist(builder.getPosition(), targetPosition) > 0) {
-                return new EntityAction(new MoveAction(targetPosition,
-                                                       true,
-                                                       true),
-                                        null,
-                                        null,
-                                        null);
+                actionSink.move(targetPosition.getX(), targetPosition.getY(), true, true);
+                return;
             }
             // auto build or repair if a project is the target
-            EntityAction builderAction = getAutoBuildRepairAction(builder);
+            emitAutoBuildRepairAction(builder, actionSink);
             // auto attack resource if a resource is the target
-            builderAction.setAttackAction(new AttackAction(null, new AutoAttack(0, new EntityType[] {EntityType.RESOURCE})));
-            return builderAction;
+            actionSink.autoAttack(0, RESOURCE_TARGETS);
+            return;
         }
 
         // otherwise, explore!
         Vec2Int oppositeEndOfMap = new Vec2Int(playerView.getMapSize() - 1, playerView.getMapSize() - 1);
-        return new EntityAction(new MoveAction(oppositeEndOfMap,
-                                               true,
-                                               false),
-                                null,
-                                null,
-                                null);
+        emitFlowFieldMove(actionSink, oppositeEndOfMapField, builder.getPosition(), oppositeEndOfMap, false);
     }
 
-    private EntityAction getAttackerAction(Entity entity) {
+    private void emitAttackerAction(Entity entity, ActionSink actionSink) {
         // move to target enemy if one exists
-        Vec2Int targetEnemyPosition = attackersToTargetPositions.get(entity.getId());
+        Entity targetEnemy = attackerTargets.get(entity.getId());
+        Vec2Int targetEnemyPosition = targetEnemy == null ? null : targetEnemy.getPosition();
         int sightRange = getEntityProperties(entity).getSightRange();
         if (targetEnemyPosition != null) {
-            return new EntityAction(new MoveAction(targetEnemyPosition,
-                                                   true,
-                                                   true),
-                                    null,
-                                    new AttackAction(null, new AutoAttack(sightRange, new EntityType[0])),
-                                    null);
+            emitFlowFieldMove(actionSink, getEnemyTargetField(targetEnemy), entity.getPosition(), targetEnemyPosition, true);
+            actionSink.autoAttack(sightRange, ANY_TARGETS);
+            return;
         }
 
         // otherwise, go to constant meeting point
-        return new EntityAction(new MoveAction(ATTACKER_MEETING_POINT,
-                                               true,
-                                               false),
-                                null,
-                                null,
-                                null);
+        emitFlowFieldMove(actionSink, meetingPointField, entity.getPosition(), ATTACKER_MEETING_POINT, false);
     }
 
-    private EntityAction getTurretAction(Entity entity) {
-        return new EntityAction(null, null, new AttackAction(null, new AutoAttack(0, new EntityType[0])), null);
+    private void emitTurretAction(Entity entity, ActionSink actionSink) {
+        actionSink.autoAttack(0, ANY_TARGETS);
     }
 
 
     // BASE ACTIONS
 
-    private EntityAction getBuilderBaseAction(Entity entity) {
+    private void emitBuilderBaseAction(Entity entity, ActionSink actionSink) {
         List<Entity> builderUnits = myEntities.getOrDefault(EntityType.BUILDER_UNIT, new ArrayList<>());
-        if (builderUnits.size() >= getExpectedNumBuilders()) return new EntityAction();
+        if (builderUnits.size() >= getExpectedNumBuilders()) return;
 
         int baseSize = entityProperties.get(EntityType.BUILDER_BASE).getSize();
-        Vec2Int buildPosition = new Vec2Int(entity.getPosition().getX() + baseSize,
-                                            entity.getPosition().getY() + baseSize - 1);
-        return new EntityAction(null,
-                                new BuildAction(EntityType.BUILDER_UNIT,
-                                                buildPosition),
-                                null,
-                                null);
+        actionSink.build(EntityType.BUILDER_UNIT,
+                         entity.getPosition().getX() + baseSize,
+                         entity.getPosition().getY() + baseSize - 1);
     }
 
-    private EntityAction getRangedBaseAction(Entity entity) {
+    private void emitRangedBaseAction(Entity entity, ActionSink actionSink) {
         List<Entity> rangedUnits = myEntities.getOrDefault(EntityType.RANGED_UNIT, new ArrayList<>());
-        if (rangedUnits.size() >= getExpectedNumRangedUnits()) return new EntityAction();
+        if (rangedUnits.size() >= getExpectedNumRangedUnits()) return;
         
         int baseSize = entityProperties.get(EntityType.RANGED_BASE).getSize();
-        Vec2Int buildPosition = new Vec2Int(entity.getPosition().getX() + baseSize,
-                                            entity.getPosition().getY() + baseSize - 1);
-        return new EntityAction(null,
-                                new BuildAction(EntityType.RANGED_UNIT,
-                                                buildPosition),
-                                null,
-                                null);
+        actionSink.build(EntityType.RANGED_UNIT,
+                         entity.getPosition().getX() + baseSize,
+                         entity.getPosition().getY() + baseSize - 1);
     }
 
-    private EntityAction getMeleeBaseAction(Entity entity) {
+    private void emitMeleeBaseAction(Entity entity, ActionSink actionSink) {
         List<Entity> meleeUnits = myEntities.getOrDefault(EntityType.MELEE_UNIT, new ArrayList<>());
-        if (meleeUnits.size() >= getExpectedNumMeleeUnits()) return new EntityAction();
+        if (meleeUnits.size() >= getExpectedNumMeleeUnits()) return;
 
         int baseSize = entityProperties.get(EntityType.MELEE_BASE).getSize();
-        Vec2Int buildPosition = new Vec2Int(entity.getPosition().getX() + baseSize,
-                                            entity.getPosition().getY() + baseSize - 1);
-        return new EntityAction(null,
-                                new BuildAction(EntityType.MELEE_UNIT,
-                                                buildPosition),
-                                null,
-                                null);
+        actionSink.build(EntityType.MELEE_UNIT,
+                         entity.getPosition().getX() + baseSize,
+                         entity.getPosition().getY() + baseSize - 1);
     }
 
 
     // GET ACTION
 
-    private EntityAction getEntityAction(Entity entity) {
+    // computes the actions of the chunks [from, to) of actionEntities into their segments, splitting while there are several
+    class ActionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        ActionTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                int entityCount = actionEntities.size();
+                for (int i = from * ENTITIES_PER_ACTION_TASK; i < Math.min((from + 1) * ENTITIES_PER_ACTION_TASK, entityCount); i++) {
+                    emitEntityAction(actionEntities.get(i), actionSegments[from]);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ActionTask(from, mid), new ActionTask(mid, to));
+            }
+        }
+    }
+
+    // all per-tick state is built before this and only read while the actions are computed
+    private void emitEntityActions(ActionSink actionSink) {
+        actionEntities.clear();
+        for (List<Entity> myEntitiesOfType : myEntities.values()) {
+            actionEntities.addAll(myEntitiesOfType);
+        }
+        int entityCount = actionEntities.size();
+        if (actionPool == null || entityCount < MIN_PARALLEL_ENTITIES) {
+            for (Entity entity : actionEntities) {
+                emitEntityAction(entity, actionSink);
+            }
+            return;
+        }
+
+        int chunkCount = (entityCount + ENTITIES_PER_ACTION_TASK - 1) / ENTITIES_PER_ACTION_TASK;
+        if (actionSegments.length < chunkCount) {
+            actionSegments = new ActionSink[chunkCount];
+        }
+        for (int i = 0; i < chunkCount; i++) {
+            actionSegments[i] = actionSink.newSegment();
+        }
+        actionPool.invoke(new ActionTask(0, chunkCount));
+        // appended in entity order, so the result doesn't depend on scheduling
+        for (int i = 0; i < chunkCount; i++) {
+            actionSink.append(actionSegments[i]);
+            actionSegments[i] = null;
+        }
+    }
+
+    private void emitEntityAction(Entity entity, ActionSink actionSink) {
         switch(entity.getEntityType()) {
             case BUILDER_UNIT:
-                return getBuilderUnitAction(entity);
+                actionSink.beginEntity(entity.getId());
+                emitBuilderUnitAction(entity, actionSink);
+                break;
             case RANGED_UNIT:
-                return getAttackerAction(entity);
             case MELEE_UNIT:
-                return getAttackerAction(entity);
+                actionSink.beginEntity(entity.getId());
+                emitAttackerAction(entity, actionSink);
+                break;
             case TURRET:
-                return getTurretAction(entity);
+                actionSink.beginEntity(entity.getId());
+                emitTurretAction(entity, actionSink);
+                break;
             case BUILDER_BASE:
-                return getBuilderBaseAction(entity);
+                actionSink.beginEntity(entity.getId());
+                emitBuilderBaseAction(entity, actionSink);
+                break;
             case RANGED_BASE:
-                return getRangedBaseAction(entity);
+                actionSink.beginEntity(entity.getId());
+                emitRangedBaseAction(entity, actionSink);
+                break;
             case MELEE_BASE:
-                return getMeleeBaseAction(entity);
+                actionSink.beginEntity(entity.getId());
+                emitMeleeBaseAction(entity, actionSink);
+                break;
             default:
-                return null;
+                return;
         }
+        actionSink.endEntity();
     }
 
     private void resetForNewTick(PlayerView playerView) {
-        if (entityProperties == null) entityProperties = playerView.getEntityProperties();
+        if (entityProperties == null) entityProperties = playerView.getEntityPropertiesTable();
         if (myId == -1) myId = playerView.getMyId();
         this.playerView = playerView;
 
-        int mapSize = playerView.getMapSize();
-        entityMap = new Entity[mapSize][mapSize];
-
-        populationAvailable = 0;
-        populationUsed = 0;
-    
-        myEntities.clear();
-        enemyEntities.clear();
-        resources.clear();
+        if (worldState == null) {
+            worldState = new WorldState(myId, entityProperties, SPATIAL_INDEX_BUCKET_SIZE);
+            occupancyGrid = worldState.getOccupancyGrid();
+            spatialIndex = worldState.getSpatialIndex();
+            myEntities = worldState.getMyEntities();
+            enemyEntities = worldState.getEnemyEntities();
+            resources = worldState.getResources();
+        }
     
-        builderTargetPositions.clear();
-        attackersToTargetPositions.clear();
+        Arrays.fill(enemyTargets, null);
     }
 
     public Action getAction(PlayerView playerView, DebugInterface debugInterface) {
-        Entity[] entities = playerView.getEntities();
+        ActionBuilder actionBuilder = new ActionBuilder();
+        getAction(playerView, debugInterface, actionBuilder);
+        return actionBuilder.build();
+    }
+
+    // the same actions, emitted into the sink as they are computed instead of built into an Action
+    public void getAction(PlayerView playerView, DebugInterface debugInterface, ActionSink actionSink) {
+        timeBudget.startTick(playerView.getCurrentTick(), playerView.getMaxTickCount());
 
         // reset lists, maps, variables, etc
         resetForNewTick(playerView);
 
         // update entity lists
-        getAllEntities(entities);
+        getAllEntities(playerView);
+        profiler.mark(PHASE_ENTITIES);
         getOtherMapCornerDistanceGrid();
+        profiler.mark(PHASE_DISTANCE_FIELD);
 
         // System.out.println("builders: " + myEntities.getOrDefault(EntityType.BUILDER_UNIT, new ArrayList<>()).size() + "/" + getExpectedNumBuilders());
         // System.out.println("ranged units: " + myEntities.getOrDefault(EntityType.RANGED_UNIT, new ArrayList<>()).size() + "/" + getExpectedNumRangedUnits());
@@ -648,24 +741,24 @@ public class MyStrategy {
 
         // create new projects
         createHouseProjects();
+        profiler.mark(PHASE_HOUSE_PROJECTS);
 
         // find target positions and assign units to them
-        List<Vec2Int> targetProjectPositions = getTargetPositions(projects);
-        List<Vec2Int> targetResourcePositions = getTargetPositions(resources);
-        assignBuildersToPositions(new List[] {targetProjectPositions, targetResourcePositions},
+        projectPositionFinder.find(projects, occupancyGrid, entityProperties);
+        resourcePositionFinder.find(resources, occupancyGrid, entityProperties);
+        profiler.mark(PHASE_TARGET_POSITIONS);
+        assignBuildersToPositions(new TargetPositionFinder[] {projectPositionFinder, resourcePositionFinder},
                                   new Integer[] {NUM_HOUSE_BUILDERS * projects.size(), null});
+        profiler.mark(PHASE_BUILDER_ASSIGNMENT);
         assignAttackersToEnemies();
+        profiler.mark(PHASE_ATTACKER_ASSIGNMENT);
+        computeFlowFields();
+        profiler.mark(PHASE_FLOW_FIELDS);
 
         // get entity actions
-        Map<Integer, EntityAction> entityActions = new HashMap<>();
-        for (Entity entity : entities) {
-            if (!isMyEntity(entity)) continue;
-            EntityAction entityAction = getEntityAction(entity);
-            if (entityAction != null) {
-                entityActions.put(entity.getId(), entityAction);
-            }
-        }
-        return new Action(entityActions);
+        emitEntityActions(actionSink);
+        profiler.mark(PHASE_ACTIONS);
+        timeBudget.endTick();
     }
 
 
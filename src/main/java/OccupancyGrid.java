@@ -0,0 +1,158 @@
+import java.util.Arrays;
+
+public class OccupancyGrid {
+    // occupied levels: nothing, something that might move eventually, something that can't move
+    public static final int EMPTY = 0;
+    public static final int MOVABLE = 1;
+    public static final int IMMOVABLE = 2;
+
+    public static final int NO_ENTITY_TYPE = -1;
+    public static final int NO_OWNER = -1;
+    public static final int NO_ENTITY = -1;
+
+    private int mapSize = 0;
+
+    // all layers are indexed by x + y * mapSize
+    private byte[] levels = new byte[0];
+    private byte[] entityTypeTags = new byte[0];
+    private int[] owners = new int[0];
+    private int[] entityIds = new int[0];
+
+    // summed-area tables of the immovable and movable cells, indexed by x + y * (mapSize + 1)
+    // entry (x, y) counts the cells in [0, x) x [0, y), they are only used while nothing changed since buildSums
+    private int[] immovableSums = new int[0];
+    private int[] movableSums = new int[0];
+    private boolean sumsValid = false;
+
+    public int getMapSize() {
+        return mapSize;
+    }
+
+    public void reset(int mapSize) {
+        if (mapSize != this.mapSize) {
+            this.mapSize = mapSize;
+            int cellCount = mapSize * mapSize;
+            levels = new byte[cellCount];
+            entityTypeTags = new byte[cellCount];
+            owners = new int[cellCount];
+            entityIds = new int[cellCount];
+            immovableSums = new int[(mapSize + 1) * (mapSize + 1)];
+            movableSums = new int[(mapSize + 1) * (mapSize + 1)];
+        }
+        Arrays.fill(levels, (byte) EMPTY);
+        Arrays.fill(entityTypeTags, (byte) NO_ENTITY_TYPE);
+        Arrays.fill(owners, NO_OWNER);
+        Arrays.fill(entityIds, NO_ENTITY);
+        sumsValid = false;
+    }
+
+    public void occupy(int x, int y, int size, int level, int entityTypeTag, int owner, int entityId) {
+        sumsValid = false;
+        for (int yDiff = 0; yDiff < size; yDiff++) {
+            int rowStart = (y + yDiff) * mapSize + x;
+            for (int xDiff = 0; xDiff < size; xDiff++) {
+                int cell = rowStart + xDiff;
+                levels[cell] = (byte) level;
+                entityTypeTags[cell] = (byte) entityTypeTag;
+                owners[cell] = owner;
+                entityIds[cell] = entityId;
+            }
+        }
+    }
+
+    // clears the cells of the square that still belong to the entity, another one may have moved in already
+    public void vacate(int x, int y, int size, int entityId) {
+        sumsValid = false;
+        for (int yDiff = 0; yDiff < size; yDiff++) {
+            int rowStart = (y + yDiff) * mapSize + x;
+            for (int xDiff = 0; xDiff < size; xDiff++) {
+                int cell = rowStart + xDiff;
+                if (entityIds[cell] != entityId) continue;
+                levels[cell] = EMPTY;
+                entityTypeTags[cell] = NO_ENTITY_TYPE;
+                owners[cell] = NO_OWNER;
+                entityIds[cell] = NO_ENTITY;
+            }
+        }
+    }
+
+    // called once every entity of the tick is in, so window queries no longer depend on the window size
+    // does nothing when no cell changed since the last build
+    public void buildSums() {
+        if (sumsValid) return;
+        int stride = mapSize + 1;
+        for (int y = 0; y < mapSize; y++) {
+            int immovableRow = 0;
+            int movableRow = 0;
+            for (int x = 0; x < mapSize; x++) {
+                int level = levels[x + y * mapSize];
+                if (level == IMMOVABLE) immovableRow++;
+                else if (level == MOVABLE) movableRow++;
+                int sum = (x + 1) + (y + 1) * stride;
+                immovableSums[sum] = immovableSums[sum - stride] + immovableRow;
+                movableSums[sum] = movableSums[sum - stride] + movableRow;
+            }
+        }
+        sumsValid = true;
+    }
+
+    private int countInWindow(int[] sums, int xStart, int yStart, int xEnd, int yEnd) {
+        int stride = mapSize + 1;
+        return sums[xEnd + yEnd * stride] - sums[xStart + yEnd * stride] -
+               sums[xEnd + yStart * stride] + sums[xStart + yStart * stride];
+    }
+
+    public boolean isValidCoords(int x, int y) {
+        return x >= 0 && y >= 0 && x < mapSize && y < mapSize;
+    }
+
+    public int getCell(int x, int y) {
+        return x + y * mapSize;
+    }
+
+    public int getLevel(int x, int y) {
+        if (!isValidCoords(x, y)) return EMPTY;
+        return levels[x + y * mapSize];
+    }
+
+    // highest level in the size x size square with its corner at (x, y), cells outside the map count as empty
+    public int getLevel(int x, int y, int size) {
+        int maxLevel = EMPTY;
+        int xStart = Math.max(x, 0);
+        int yStart = Math.max(y, 0);
+        int xEnd = Math.min(x + size, mapSize);
+        int yEnd = Math.min(y + size, mapSize);
+        if (xStart >= xEnd || yStart >= yEnd) return EMPTY;
+        if (sumsValid) {
+            if (countInWindow(immovableSums, xStart, yStart, xEnd, yEnd) > 0) return IMMOVABLE;
+            return countInWindow(movableSums, xStart, yStart, xEnd, yEnd) > 0 ? MOVABLE : EMPTY;
+        }
+        for (int cellY = yStart; cellY < yEnd; cellY++) {
+            int rowStart = cellY * mapSize;
+            for (int cellX = xStart; cellX < xEnd; cellX++) {
+                int level = levels[rowStart + cellX];
+                if (level > maxLevel) {
+                    if (level == IMMOVABLE) return IMMOVABLE;
+                    maxLevel = level;
+                }
+            }
+        }
+        return maxLevel;
+    }
+
+    public int getEntityTypeTag(int x, int y) {
+        return entityTypeTags[x + y * mapSize];
+    }
+
+    public int getEntityTypeTag(int cell) {
+        return entityTypeTags[cell];
+    }
+
+    public int getOwner(int x, int y) {
+        return owners[x + y * mapSize];
+    }
+
+    public int getEntityId(int x, int y) {
+        return entityIds[x + y * mapSize];
+    }
+}
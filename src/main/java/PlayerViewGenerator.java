@@ -0,0 +1,333 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import model.Entity;
+import model.EntityProperties;
+import model.EntityType;
+import model.Player;
+import model.PlayerView;
+import model.ServerMessage;
+import model.Vec2Int;
+
+// builds valid PlayerViews of any size from a seed, for benchmarks and soak tests beyond what real games produce
+// every player owns the three bases and some extra buildings in its corner of the map and units mostly around it,
+// resources are spread evenly or gathered in fields, and entities never overlap
+// the same config and seed always give the same view
+public class PlayerViewGenerator {
+    public static final int MIN_MAP_SIZE = 40;
+    public static final int MAX_MAP_SIZE = 256;
+    // share of the units placed anywhere on the map instead of in their player's quarter
+    public static final double ROAMING_UNIT_SHARE = 0.3;
+    // share of the extra buildings still under construction
+    public static final double UNFINISHED_BUILDING_SHARE = 0.2;
+    // share of the cells of a resource field covered by resources, fields are sized for it
+    public static final double FIELD_FILL = 0.6;
+
+    private static final EntityType[] BASE_TYPES = new EntityType[] {
+        EntityType.BUILDER_BASE, EntityType.MELEE_BASE, EntityType.RANGED_BASE
+    };
+    private static final EntityType[] BUILDING_TYPES = new EntityType[] {EntityType.HOUSE, EntityType.TURRET, EntityType.WALL};
+    private static final EntityType[] UNIT_TYPES = new EntityType[] {
+        EntityType.BUILDER_UNIT, EntityType.BUILDER_UNIT, EntityType.MELEE_UNIT, EntityType.RANGED_UNIT
+    };
+
+    static class Config {
+        long seed = 0;
+        int mapSize = LocalSimulator.DEFAULT_MAP_SIZE;
+        int playerCount = 4;
+        // the player the view is for
+        int myId = 1;
+        int unitsPerPlayer = 60;
+        int buildingsPerPlayer = 10;
+        int resourceCount = 1200;
+        // 0 spreads the resources evenly, otherwise they are gathered in this many round fields
+        int resourceFieldCount = 0;
+        boolean fogOfWar = false;
+        int currentTick = 0;
+
+        static Config parse(String[] args, Map<String, String> otherArgs) {
+            Config config = new Config();
+            for (String arg : args) {
+                int split = arg.indexOf('=');
+                if (!arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+                String name = split == -1 ? arg.substring(2) : arg.substring(2, split);
+                String value = split == -1 ? "" : arg.substring(split + 1);
+                if (name.equals("seed")) {
+                    config.seed = Long.parseLong(value);
+                } else if (name.equals("map-size")) {
+                    config.mapSize = Integer.parseInt(value);
+                } else if (name.equals("players")) {
+                    config.playerCount = Integer.parseInt(value);
+                } else if (name.equals("my-id")) {
+                    config.myId = Integer.parseInt(value);
+                } else if (name.equals("units")) {
+                    config.unitsPerPlayer = Integer.parseInt(value);
+                } else if (name.equals("buildings")) {
+                    config.buildingsPerPlayer = Integer.parseInt(value);
+                } else if (name.equals("resources")) {
+                    config.resourceCount = Integer.parseInt(value);
+                } else if (name.equals("resource-fields")) {
+                    config.resourceFieldCount = Integer.parseInt(value);
+                } else if (name.equals("fog-of-war")) {
+                    config.fogOfWar = true;
+                } else if (name.equals("tick")) {
+                    config.currentTick = Integer.parseInt(value);
+                } else {
+                    otherArgs.put(name, value);
+                }
+            }
+            return config;
+        }
+
+        void validate() {
+            if (mapSize < MIN_MAP_SIZE || mapSize > MAX_MAP_SIZE) {
+                throw new IllegalArgumentException("Map size " + mapSize + " is outside of [" + MIN_MAP_SIZE + ", " + MAX_MAP_SIZE + "]");
+            }
+            if (playerCount < 1 || playerCount > 4) {
+                throw new IllegalArgumentException("Player count " + playerCount + " is outside of [1, 4]");
+            }
+            if (myId < 1 || myId > playerCount) {
+                throw new IllegalArgumentException("Player " + myId + " is not in the game");
+            }
+            if (currentTick < 0 || currentTick >= LocalSimulator.DEFAULT_MAX_TICK_COUNT) {
+                throw new IllegalArgumentException("Tick " + currentTick + " is outside of [0, " + LocalSimulator.DEFAULT_MAX_TICK_COUNT + ")");
+            }
+        }
+    }
+
+    private final Config config;
+    private final Map<EntityType, EntityProperties> entityProperties = LocalSimulator.defaultEntityProperties();
+    private final Random random;
+    private final boolean[] occupied;
+    private final List<Entity> entities = new ArrayList<>();
+    private int nextEntityId = 1;
+
+    private PlayerViewGenerator(Config config) {
+        config.validate();
+        this.config = config;
+        this.random = new Random(config.seed);
+        this.occupied = new boolean[config.mapSize * config.mapSize];
+    }
+
+    public static PlayerView generate(Config config) {
+        return new PlayerViewGenerator(config).generate();
+    }
+
+    private PlayerView generate() {
+        int mapSize = config.mapSize;
+        int quarter = mapSize / 2;
+        for (int playerId = 1; playerId <= config.playerCount; playerId++) {
+            int corner = playerId - 1;
+            for (int i = 0; i < BASE_TYPES.length; i++) {
+                placeInQuarter(playerId, corner, BASE_TYPES[i], 5 + 10 * i, 5 + 10 * (i % 2), false);
+            }
+            for (int i = 0; i < config.buildingsPerPlayer; i++) {
+                EntityType entityType = BUILDING_TYPES[random.nextInt(BUILDING_TYPES.length)];
+                placeAnywhereInQuarter(playerId, corner, entityType, quarter, random.nextDouble() < UNFINISHED_BUILDING_SHARE);
+            }
+            for (int i = 0; i < config.unitsPerPlayer; i++) {
+                EntityType entityType = UNIT_TYPES[i % UNIT_TYPES.length];
+                if (random.nextDouble() < ROAMING_UNIT_SHARE) {
+                    placeAnywhere(playerId, entityType, mapSize);
+                } else {
+                    placeAnywhereInQuarter(playerId, corner, entityType, quarter, false);
+                }
+            }
+        }
+        placeResources();
+
+        Player[] players = new Player[config.playerCount];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new Player(i + 1, random.nextInt(10_000), random.nextInt(2_000));
+        }
+        List<Entity> visibleEntities = config.fogOfWar ? getVisibleEntities() : entities;
+        return new PlayerView(config.myId, mapSize, config.fogOfWar, entityProperties,
+                              LocalSimulator.DEFAULT_MAX_TICK_COUNT, LocalSimulator.DEFAULT_MAX_PATHFIND_NODES,
+                              config.currentTick, players, visibleEntities.toArray(new Entity[0]));
+    }
+
+    private int getSize(EntityType entityType) {
+        return entityProperties.get(entityType).getSize();
+    }
+
+    // places the entity given for the first corner into another one, as in LocalSimulator
+    private boolean placeInQuarter(Integer playerId, int corner, EntityType entityType, int x, int y, boolean unfinished) {
+        int size = getSize(entityType);
+        int mirroredX = corner == 1 || corner == 3 ? config.mapSize - x - size : x;
+        int mirroredY = corner == 1 || corner == 2 ? config.mapSize - y - size : y;
+        return place(playerId, entityType, mirroredX, mirroredY, unfinished);
+    }
+
+    private void placeAnywhereInQuarter(int playerId, int corner, EntityType entityType, int quarter, boolean unfinished) {
+        for (int attempt = 0; attempt < quarter * quarter; attempt++) {
+            if (placeInQuarter(playerId, corner, entityType, random.nextInt(quarter), random.nextInt(quarter), unfinished)) return;
+        }
+    }
+
+    private void placeAnywhere(int playerId, EntityType entityType, int mapSize) {
+        for (int attempt = 0; attempt < mapSize * mapSize; attempt++) {
+            if (place(playerId, entityType, random.nextInt(mapSize), random.nextInt(mapSize), false)) return;
+        }
+    }
+
+    private void placeResources() {
+        int mapSize = config.mapSize;
+        int placed = 0;
+        if (config.resourceFieldCount <= 0) {
+            for (int attempt = 0; placed < config.resourceCount && attempt < 4 * mapSize * mapSize; attempt++) {
+                if (place(null, EntityType.RESOURCE, random.nextInt(mapSize), random.nextInt(mapSize), false)) placed++;
+            }
+            return;
+        }
+        // round fields of about the same size, what a field cut by the map edge or by buildings misses goes to the next ones
+        for (int field = 0; field < config.resourceFieldCount && placed < config.resourceCount; field++) {
+            int fieldsLeft = config.resourceFieldCount - field;
+            int perField = (config.resourceCount - placed + fieldsLeft - 1) / fieldsLeft;
+            int radius = (int) Math.ceil(Math.sqrt(perField / (FIELD_FILL * Math.PI))) + 1;
+            int centerX = random.nextInt(mapSize);
+            int centerY = random.nextInt(mapSize);
+            int fieldPlaced = 0;
+            for (int attempt = 0; fieldPlaced < perField && placed < config.resourceCount && attempt < 8 * perField; attempt++) {
+                double angle = random.nextDouble() * 2 * Math.PI;
+                double distance = radius * Math.sqrt(random.nextDouble());
+                int x = centerX + (int) Math.round(distance * Math.cos(angle));
+                int y = centerY + (int) Math.round(distance * Math.sin(angle));
+                if (place(null, EntityType.RESOURCE, x, y, false)) {
+                    fieldPlaced++;
+                    placed++;
+                }
+            }
+        }
+    }
+
+    // adds the entity if it fits on free cells, unfinished buildings are inactive and below their max health
+    private boolean place(Integer playerId, EntityType entityType, int x, int y, boolean unfinished) {
+        int mapSize = config.mapSize;
+        int size = getSize(entityType);
+        if (x < 0 || y < 0 || x + size > mapSize || y + size > mapSize) return false;
+        for (int i = x; i < x + size; i++) {
+            for (int j = y; j < y + size; j++) {
+                if (occupied[i + j * mapSize]) return false;
+            }
+        }
+        for (int i = x; i < x + size; i++) {
+            for (int j = y; j < y + size; j++) {
+                occupied[i + j * mapSize] = true;
+            }
+        }
+        EntityProperties properties = entityProperties.get(entityType);
+        int maxHealth = properties.getMaxHealth();
+        int health;
+        if (unfinished) {
+            health = 1 + random.nextInt(Math.max(maxHealth - 1, 1));
+        } else if (properties.isCanMove()) {
+            health = 1 + random.nextInt(maxHealth);
+        } else {
+            health = maxHealth;
+        }
+        entities.add(new Entity(nextEntityId++, playerId, entityType, new Vec2Int(x, y), health, !unfinished));
+        return true;
+    }
+
+    // what the player sees: its own entities and everything within the sight range of one of them
+    private List<Entity> getVisibleEntities() {
+        int mapSize = config.mapSize;
+        boolean[] visible = new boolean[mapSize * mapSize];
+        for (Entity entity : entities) {
+            if (entity.getPlayerId() == null || entity.getPlayerId() != config.myId) continue;
+            int size = getSize(entity.getEntityType());
+            int sightRange = entityProperties.get(entity.getEntityType()).getSightRange();
+            int x0 = entity.getPosition().getX();
+            int y0 = entity.getPosition().getY();
+            for (int x = Math.max(x0 - sightRange, 0); x < Math.min(x0 + size + sightRange, mapSize); x++) {
+                for (int y = Math.max(y0 - sightRange, 0); y < Math.min(y0 + size + sightRange, mapSize); y++) {
+                    int dx = Math.max(Math.max(x0 - x, x - (x0 + size - 1)), 0);
+                    int dy = Math.max(Math.max(y0 - y, y - (y0 + size - 1)), 0);
+                    if (dx + dy <= sightRange) {
+                        visible[x + y * mapSize] = true;
+                    }
+                }
+            }
+        }
+        List<Entity> visibleEntities = new ArrayList<>();
+        for (Entity entity : entities) {
+            if (isVisible(entity, visible, mapSize)) {
+                visibleEntities.add(entity);
+            }
+        }
+        return visibleEntities;
+    }
+
+    private boolean isVisible(Entity entity, boolean[] visible, int mapSize) {
+        int size = getSize(entity.getEntityType());
+        for (int x = entity.getPosition().getX(); x < entity.getPosition().getX() + size; x++) {
+            for (int y = entity.getPosition().getY(); y < entity.getPosition().getY() + size; y++) {
+                if (visible[x + y * mapSize]) return true;
+            }
+        }
+        return false;
+    }
+
+    public static void write(PlayerView playerView, Path path) throws IOException {
+        try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(path))) {
+            playerView.writeTo(stream);
+        }
+    }
+
+    public static PlayerView read(Path path) throws IOException {
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(path))) {
+            return PlayerView.readFrom(stream);
+        }
+    }
+
+    // with --out=directory, writes --count independent views with consecutive seeds as files view-<map size>-<seed>.bin
+    // with --stream=file, writes one server stream of --count GetAction frames for LoopbackServer --frames,
+    // the frames are the view of the seed at consecutive ticks, since entity ids must keep their type and owner over a game
+    public static void main(String[] args) throws IOException {
+        Map<String, String> otherArgs = new HashMap<>();
+        Config config = Config.parse(args, otherArgs);
+        int count = Integer.parseInt(otherArgs.getOrDefault("count", "1"));
+        String outDirectory = otherArgs.remove("out");
+        String streamPath = otherArgs.remove("stream");
+        otherArgs.remove("count");
+        if (!otherArgs.isEmpty() || (outDirectory == null) == (streamPath == null)) {
+            throw new IllegalArgumentException("Usage: PlayerViewGenerator [config options] [--count=N] (--out=directory | --stream=file)");
+        }
+
+        long firstSeed = config.seed;
+        int firstTick = config.currentTick;
+        OutputStream stream = streamPath == null ? null : new BufferedOutputStream(Files.newOutputStream(Paths.get(streamPath)));
+        try {
+            for (int i = 0; i < count; i++) {
+                config.currentTick = firstTick + i;
+                if (stream != null) {
+                    new ServerMessage.GetAction(generate(config), false).writeTo(stream);
+                } else {
+                    config.seed = firstSeed + i;
+                    PlayerView playerView = generate(config);
+                    write(playerView, Paths.get(outDirectory, "view-" + config.mapSize + "-" + config.seed + ".bin"));
+                }
+            }
+            if (stream != null) {
+                new ServerMessage.Finish().writeTo(stream);
+            }
+        } finally {
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import model.Action;
+import model.ActionWriter;
+import model.ClientMessage;
+import model.EntityAction;
+import model.PlayerViewReader;
+import model.ServerMessage;
+import util.ByteBufferInputStream;
+import util.ReplayReader;
+import util.ReplayWriter;
+
+// plays a replay recorded by Runner --record back into a fresh MyStrategy, without a server
+// every GetAction is decoded from the memory-mapped file and timed, and the action is compared with the recorded one
+// takes the replay path and the Runner options that apply to decoding and the strategy
+// the strategy runs with an unlimited budget unless --game-budget is given, so the replayed actions don't depend on
+// this machine's clock, and a mismatch means the recorded tick was cut short or the strategy changed
+// record with --unlimited-budget as well to compare everything, e.g. against LoopbackServer
+public class ReplayRunner {
+    public static final int SLOWEST_TICKS_SHOWN = 5;
+    public static final int MISMATCHES_SHOWN = 10;
+
+    public static void main(String[] args) throws IOException {
+        List<String> positionalArgs = new ArrayList<>();
+        Runner.Options defaults = new Runner.Options();
+        defaults.unlimitedBudget = true;
+        Runner.Options options = Runner.Options.parse(args, positionalArgs, defaults);
+        if (positionalArgs.size() != 1) {
+            throw new IllegalArgumentException("Usage: ReplayRunner <replay file> [options]");
+        }
+
+        TickProfiler profiler = options.profile ? new TickProfiler(MyStrategy.PROFILER_PHASES, null) : TickProfiler.DISABLED;
+        MyStrategy myStrategy = options.newStrategy(profiler);
+        PlayerViewReader playerViewReader = new PlayerViewReader(options.packedEntities, options.cacheEntityProperties);
+        ActionWriter actionWriter = options.streamActions ? new ActionWriter() : null;
+        ByteArrayOutputStream streamedAction = new ByteArrayOutputStream();
+        List<long[]> tickNanos = new ArrayList<>();
+        List<Integer> mismatchedTicks = new ArrayList<>();
+        int mismatchCount = 0;
+        Action action = null;
+        int tick = -1;
+        try (ReplayReader replayReader = new ReplayReader(Paths.get(positionalArgs.get(0)))) {
+            while (replayReader.next()) {
+                if (replayReader.getKind() == ReplayWriter.SERVER_MESSAGE) {
+                    ServerMessage message = ServerMessage.readFrom(new ByteBufferInputStream(replayReader.getPayload()), playerViewReader);
+                    action = null;
+                    if (message instanceof ServerMessage.GetAction) {
+                        ServerMessage.GetAction getActionMessage = (ServerMessage.GetAction) message;
+                        tick = getActionMessage.getPlayerView().getCurrentTick();
+                        profiler.startTick();
+                        long startNanos = System.nanoTime();
+                        if (actionWriter != null) {
+                            actionWriter.reset();
+                            myStrategy.getAction(getActionMessage.getPlayerView(), null, actionWriter);
+                        } else {
+                            action = myStrategy.getAction(getActionMessage.getPlayerView(), null);
+                        }
+                        tickNanos.add(new long[] {System.nanoTime() - startNanos, tick});
+                        profiler.endTick(tick);
+                        if (actionWriter != null) {
+                            // decoded after the clock stopped, only to compare it with the recording
+                            actionWriter.writeTo(streamedAction);
+                            action = readRecordedAction(new ByteBufferInputStream(ByteBuffer.wrap(streamedAction.toByteArray())));
+                            streamedAction.reset();
+                        }
+                    }
+                } else if (replayReader.getKind() == ReplayWriter.CLIENT_MESSAGES && action != null) {
+                    Action recordedAction = readRecordedAction(new ByteBufferInputStream(replayReader.getPayload()));
+                    if (recordedAction != null && !isSameAction(action, recordedAction)) {
+                        mismatchCount++;
+                        if (mismatchedTicks.size() < MISMATCHES_SHOWN) {
+                            mismatchedTicks.add(tick);
+                        }
+                    }
+                }
+            }
+        }
+
+        long totalNanos = 0;
+        for (long[] sample : tickNanos) {
+            totalNanos += sample[0];
+        }
+        System.out.printf("%d ticks, %.1f ms in getAction, %.1f us per tick%n", tickNanos.size(), totalNanos / 1e6,
+                          tickNanos.isEmpty() ? 0.0 : totalNanos / 1e3 / tickNanos.size());
+        tickNanos.sort((sample1, sample2) -> Long.compare(sample2[0], sample1[0]));
+        for (int i = 0; i < Math.min(SLOWEST_TICKS_SHOWN, tickNanos.size()); i++) {
+            System.out.printf("slow tick %d: %.1f us%n", tickNanos.get(i)[1], tickNanos.get(i)[0] / 1e3);
+        }
+        System.out.println(mismatchCount + " actions differ from the recording" +
+                           (mismatchedTicks.isEmpty() ? "" : ", first at ticks " + mismatchedTicks));
+        profiler.printSummary(System.out);
+    }
+
+    // the last ActionMessage among the recorded client messages, null when there is none
+    private static Action readRecordedAction(ByteBufferInputStream stream) throws IOException {
+        Action action = null;
+        while (stream.available() > 0) {
+            ClientMessage message = ClientMessage.readFrom(stream);
+            if (message instanceof ClientMessage.ActionMessage) {
+                action = ((ClientMessage.ActionMessage) message).getAction();
+            }
+        }
+        return action;
+    }
+
+    // compares the encoded entity actions, so two actions match exactly when the server would receive the same ones
+    private static boolean isSameAction(Action action, Action recordedAction) throws IOException {
+        Map<Integer, EntityAction> entityActions = action.getEntityActions();
+        Map<Integer, EntityAction> recordedEntityActions = recordedAction.getEntityActions();
+        if (entityActions.size() != recordedEntityActions.size()) return false;
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ByteArrayOutputStream recordedEncoded = new ByteArrayOutputStream();
+        for (Map.Entry<Integer, EntityAction> entry : entityActions.entrySet()) {
+            EntityAction recordedEntityAction = recordedEntityActions.get(entry.getKey());
+            if (recordedEntityAction == null) return false;
+            encoded.reset();
+            recordedEncoded.reset();
+            entry.getValue().writeTo(encoded);
+            recordedEntityAction.writeTo(recordedEncoded);
+            if (!Arrays.equals(encoded.toByteArray(), recordedEncoded.toByteArray())) return false;
+        }
+        return true;
+    }
+}
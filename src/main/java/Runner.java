@@ -1,53 +1,290 @@
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.io.InputStream;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
-import java.io.BufferedOutputStream;
 
+import util.ByteBufferInputStream;
+import util.ByteBufferOutputStream;
+import util.ReplayWriter;
+import util.SpscQueue;
 import util.StreamUtil;
 
 public class Runner {
-    private final InputStream inputStream;
-    private final OutputStream outputStream;
-
-    Runner(String host, int port, String token) throws IOException {
-        Socket socket = new Socket(host, port);
-        socket.setTcpNoDelay(true);
-        inputStream = new BufferedInputStream(socket.getInputStream());
-        outputStream = new BufferedOutputStream(socket.getOutputStream());
+    // large enough to hold a whole late-game frame, so it is usually decoded from a single read
+    public static final int CHANNEL_BUFFER_CAPACITY = 1 << 20;
+    // the protocol is lockstep, so at most one message and one action are ever in flight
+    public static final int PIPELINE_CAPACITY = 2;
+    // queued in place of a message when the I/O thread stops on an error
+    private static final model.ServerMessage IO_FAILED = new model.ServerMessage.Finish();
+
+    static class Options {
+        // use the SocketChannel transport instead of the blocking socket streams
+        boolean channelTransport = false;
+        // decode entities into a packed EntityArray instead of Entity objects
+        boolean packedEntities = false;
+        // reuse the decoded entity properties while the server keeps sending the same bytes
+        boolean cacheEntityProperties = false;
+        // threads computing the entity actions, 1 keeps everything on the runner thread
+        int actionThreads = 1;
+        // print phase timings when the game finishes
+        boolean profile = false;
+        // also write every tick's timings to this csv file, null for none
+        String profileCsvPath = null;
+        // record every frame read and written into this replay file, null for none
+        String recordPath = null;
+        // decode and encode on a separate I/O thread, debug is not available to the strategy then
+        boolean pipelined = false;
+        // encode the actions as the strategy computes them, instead of building an Action first
+        boolean streamActions = false;
+        // never cut the anytime stages short, instead of splitting the game's time over the ticks
+        boolean unlimitedBudget = false;
+
+        static Options parse(String[] args, List<String> positionalArgs) {
+            return parse(args, positionalArgs, new Options());
+        }
+
+        // the options not given keep their values in defaults
+        static Options parse(String[] args, List<String> positionalArgs, Options defaults) {
+            Options options = defaults;
+            for (String arg : args) {
+                if (arg.equals("--channel")) {
+                    options.channelTransport = true;
+                } else if (arg.equals("--packed-entities")) {
+                    options.packedEntities = true;
+                } else if (arg.equals("--cache-properties")) {
+                    options.cacheEntityProperties = true;
+                } else if (arg.startsWith("--parallel=")) {
+                    options.actionThreads = Integer.parseInt(arg.substring("--parallel=".length()));
+                    if (options.actionThreads < 1) {
+                        throw new IllegalArgumentException("Invalid option " + arg);
+                    }
+                } else if (arg.equals("--profile")) {
+                    options.profile = true;
+                } else if (arg.startsWith("--profile=")) {
+                    options.profile = true;
+                    options.profileCsvPath = arg.substring("--profile=".length());
+                } else if (arg.startsWith("--record=")) {
+                    options.recordPath = arg.substring("--record=".length());
+                } else if (arg.equals("--pipelined")) {
+                    options.pipelined = true;
+                } else if (arg.equals("--stream-actions")) {
+                    options.streamActions = true;
+                } else if (arg.equals("--unlimited-budget")) {
+                    options.unlimitedBudget = true;
+                } else if (arg.equals("--game-budget")) {
+                    options.unlimitedBudget = false;
+                } else if (arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                } else {
+                    positionalArgs.add(arg);
+                }
+            }
+            return options;
+        }
+
+        MyStrategy newStrategy(TickProfiler profiler) {
+            return new MyStrategy(actionThreads, profiler,
+                                  unlimitedBudget ? TimeBudget.unlimited() : new TimeBudget(MyStrategy.GAME_TIME_BUDGET_MILLIS));
+        }
+    }
+
+    private final ByteBufferInputStream inputStream;
+    private final ByteBufferOutputStream outputStream;
+    private final Options options;
+
+    Runner(String host, int port, String token, Options options) throws IOException {
+        this.options = options;
+        if (options.channelTransport) {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            inputStream = new ByteBufferInputStream(channel, ByteBuffer.allocateDirect(CHANNEL_BUFFER_CAPACITY));
+            outputStream = new ByteBufferOutputStream(channel, ByteBuffer.allocateDirect(CHANNEL_BUFFER_CAPACITY));
+        } else {
+            Socket socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            inputStream = new ByteBufferInputStream(socket.getInputStream());
+            outputStream = new ByteBufferOutputStream(socket.getOutputStream());
+        }
         StreamUtil.writeString(outputStream, token);
         outputStream.flush();
     }
 
+    private TickProfiler newProfiler() throws IOException {
+        if (!options.profile) return TickProfiler.DISABLED;
+        return new TickProfiler(options.pipelined ? MyStrategy.PIPELINED_PROFILER_PHASES : MyStrategy.PROFILER_PHASES,
+                                options.profileCsvPath == null ? null : Files.newBufferedWriter(Paths.get(options.profileCsvPath), StandardCharsets.UTF_8));
+    }
+
+    // the profiler is closed however the game ends, so the csv keeps every tick that was profiled
     void run() throws IOException {
-        MyStrategy myStrategy = new MyStrategy();
+        try (TickProfiler profiler = newProfiler()) {
+            if (options.pipelined) {
+                runPipelined(profiler);
+            } else {
+                runSequential(profiler);
+            }
+        }
+    }
+
+    private void runSequential(TickProfiler profiler) throws IOException {
+        MyStrategy myStrategy = options.newStrategy(profiler);
         DebugInterface debugInterface = new DebugInterface(inputStream, outputStream);
+        model.ActionWriter actionWriter = options.streamActions ? new model.ActionWriter() : null;
+        model.PlayerViewReader playerViewReader = new model.PlayerViewReader(options.packedEntities, options.cacheEntityProperties);
+        try (ReplayWriter replayWriter = options.recordPath == null ? null : new ReplayWriter(Paths.get(options.recordPath), inputStream, outputStream)) {
+            while (true) {
+                model.ServerMessage message = model.ServerMessage.readFrom(inputStream, playerViewReader);
+                if (replayWriter != null) {
+                    replayWriter.endServerMessage();
+                }
+                if (message instanceof model.ServerMessage.GetAction) {
+                    model.ServerMessage.GetAction getActionMessage = (model.ServerMessage.GetAction) message;
+                    profiler.startTick();
+                    DebugInterface tickDebugInterface = getActionMessage.isDebugAvailable() ? debugInterface : null;
+                    if (actionWriter != null) {
+                        actionWriter.reset();
+                        myStrategy.getAction(getActionMessage.getPlayerView(), tickDebugInterface, actionWriter);
+                        actionWriter.writeTo(outputStream);
+                    } else {
+                        new model.ClientMessage.ActionMessage(myStrategy.getAction(getActionMessage.getPlayerView(), tickDebugInterface)).writeTo(outputStream);
+                    }
+                    outputStream.flush();
+                    profiler.mark(MyStrategy.PHASE_SEND);
+                    profiler.endTick(getActionMessage.getPlayerView().getCurrentTick());
+                } else if (message instanceof model.ServerMessage.Finish) {
+                    if (replayWriter != null) {
+                        replayWriter.recordExchange();
+                    }
+                    profiler.printSummary(System.out);
+                    break;
+                } else if (message instanceof model.ServerMessage.DebugUpdate) {
+                    model.ServerMessage.DebugUpdate debugUpdateMessage = (model.ServerMessage.DebugUpdate) message;
+                    myStrategy.debugUpdate(debugUpdateMessage.getPlayerView(), debugInterface);
+                    new model.ClientMessage.DebugUpdateDone().writeTo(outputStream);
+                    outputStream.flush();
+                } else {
+                    throw new IOException("Unexpected server message");
+                }
+                // recorded after the reply went out, so recording never delays it
+                if (replayWriter != null) {
+                    replayWriter.recordExchange();
+                }
+            }
+        }
+    }
+
+    // the runner thread only computes actions, a dedicated I/O thread reads, decodes, encodes, writes and records
+    // decoded messages and actions are handed over through single-producer single-consumer queues
+    // views are decoded by two readers in turn, so a view the strategy still holds stays valid while the next one is decoded
+    // debug updates are answered by the I/O thread without the strategy, since debug commands would race with its writes
+    private void runPipelined(TickProfiler profiler) throws IOException {
+        MyStrategy myStrategy = options.newStrategy(profiler);
+        SpscQueue<model.ServerMessage> messages = new SpscQueue<>(PIPELINE_CAPACITY);
+        SpscQueue<model.ClientMessage> actions = new SpscQueue<>(PIPELINE_CAPACITY);
+        // a single writer is enough, the I/O thread has written it before it reads the message of the next tick
+        model.ActionWriter actionWriter = options.streamActions ? new model.ActionWriter() : null;
+        IoThread ioThread = new IoThread(messages, actions);
+        ioThread.start();
         while (true) {
-            model.ServerMessage message = model.ServerMessage.readFrom(inputStream);
+            model.ServerMessage message = messages.take();
+            if (message == IO_FAILED) {
+                throw new IOException("I/O thread failed", ioThread.failure);
+            }
             if (message instanceof model.ServerMessage.GetAction) {
-                model.ServerMessage.GetAction getActionMessage = (model.ServerMessage.GetAction) message;
-                new model.ClientMessage.ActionMessage(myStrategy.getAction(getActionMessage.getPlayerView(), getActionMessage.isDebugAvailable() ? debugInterface : null)).writeTo(outputStream);
-                outputStream.flush();
-            } else if (message instanceof model.ServerMessage.Finish) {
-                break;
-            } else if (message instanceof model.ServerMessage.DebugUpdate) {
-                model.ServerMessage.DebugUpdate debugUpdateMessage = (model.ServerMessage.DebugUpdate) message;
-                myStrategy.debugUpdate(debugUpdateMessage.getPlayerView(), debugInterface);
-                new model.ClientMessage.DebugUpdateDone().writeTo(outputStream);
-                outputStream.flush();
+                model.PlayerView playerView = ((model.ServerMessage.GetAction) message).getPlayerView();
+                profiler.startTick();
+                if (actionWriter != null) {
+                    actionWriter.reset();
+                    myStrategy.getAction(playerView, null, actionWriter);
+                    actions.put(actionWriter);
+                } else {
+                    actions.put(new model.ClientMessage.ActionMessage(myStrategy.getAction(playerView, null)));
+                }
+                // only the handoff, the I/O thread encodes and writes the action outside of the tick
+                profiler.mark(MyStrategy.PHASE_SEND);
+                profiler.endTick(playerView.getCurrentTick());
             } else {
-                throw new IOException("Unexpected server message");
+                profiler.printSummary(System.out);
+                break;
+            }
+        }
+    }
+
+    private class IoThread extends Thread {
+        private final SpscQueue<model.ServerMessage> messages;
+        private final SpscQueue<model.ClientMessage> actions;
+        private volatile Throwable failure = null;
+
+        IoThread(SpscQueue<model.ServerMessage> messages, SpscQueue<model.ClientMessage> actions) {
+            super("runner-io");
+            setDaemon(true);
+            this.messages = messages;
+            this.actions = actions;
+        }
+
+        @Override
+        public void run() {
+            try {
+                exchange();
+            } catch (Throwable e) {
+                failure = e;
+                messages.put(IO_FAILED);
+            }
+        }
+
+        private void exchange() throws IOException {
+            model.PlayerViewReader[] playerViewReaders = new model.PlayerViewReader[] {
+                new model.PlayerViewReader(options.packedEntities, options.cacheEntityProperties),
+                new model.PlayerViewReader(options.packedEntities, options.cacheEntityProperties)
+            };
+            int nextReader = 0;
+            try (ReplayWriter replayWriter = options.recordPath == null ? null : new ReplayWriter(Paths.get(options.recordPath), inputStream, outputStream)) {
+                while (true) {
+                    model.ServerMessage message = model.ServerMessage.readFrom(inputStream, playerViewReaders[nextReader]);
+                    nextReader ^= 1;
+                    // only splits the bytes off in memory, the file is written once the reply is out
+                    if (replayWriter != null) {
+                        replayWriter.endServerMessage();
+                    }
+                    if (message instanceof model.ServerMessage.GetAction) {
+                        messages.put(message);
+                        actions.take().writeTo(outputStream);
+                        outputStream.flush();
+                    } else if (message instanceof model.ServerMessage.Finish) {
+                        messages.put(message);
+                        if (replayWriter != null) {
+                            replayWriter.recordExchange();
+                        }
+                        break;
+                    } else if (message instanceof model.ServerMessage.DebugUpdate) {
+                        new model.ClientMessage.DebugUpdateDone().writeTo(outputStream);
+                        outputStream.flush();
+                    } else {
+                        throw new IOException("Unexpected server message");
+                    }
+                    if (replayWriter != null) {
+                        replayWriter.recordExchange();
+                    }
+                }
             }
         }
     }
 
     public static void main(String[] args) throws IOException {
-        String host = args.length < 1 ? "127.0.0.1" : args[0];
-        int port = args.length < 2 ? 31001 : Integer.parseInt(args[1]);
-        String token = args.length < 3 ? "0000000000000000" : args[2];
-        new Runner(host, port, token).run();
+        List<String> positionalArgs = new ArrayList<>();
+        Options options = Options.parse(args, positionalArgs);
+        String host = positionalArgs.size() < 1 ? "127.0.0.1" : positionalArgs.get(0);
+        int port = positionalArgs.size() < 2 ? 31001 : Integer.parseInt(positionalArgs.get(1));
+        String token = positionalArgs.size() < 3 ? "0000000000000000" : positionalArgs.get(2);
+        new Runner(host, port, token, options).run();
     }
-}
\ No newline at end of file
+}
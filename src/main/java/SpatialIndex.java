@@ -0,0 +1,208 @@
+import java.util.Arrays;
+import java.util.List;
+
+import model.Entity;
+
+// entities bucketed on a uniform grid, for nearest, radius and rectangle queries by type and owner
+// every entity lives in a slot chosen by the caller, which keeps it from one tick to the next,
+// and the buckets are only rebuilt when a slot changed
+// distances are manhattan distances between entity positions, ties go to the lower type tag and then to the lower slot
+public class SpatialIndex {
+    public static final int OWNER_ME = 1;
+    public static final int OWNER_ENEMY = 2;
+    public static final int OWNER_NONE = 4;
+    public static final int ALL_OWNERS = OWNER_ME | OWNER_ENEMY | OWNER_NONE;
+    public static final int ALL_TYPES = -1;
+
+    private final int bucketSize;
+    private int mapSize = 0;
+    private int bucketsPerSide = 0;
+
+    // indexed by slot, empty slots hold null
+    private Entity[] entities = new Entity[16];
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private int[] typeTags = new int[16];
+    private int[] owners = new int[16];
+    private int slotCount = 0;
+    private boolean dirty = false;
+
+    // entity indices sorted by bucket, bucket b holds sortedEntities[bucketStarts[b] .. bucketStarts[b + 1])
+    private int[] bucketStarts = new int[1];
+    private int[] sortedEntities = new int[16];
+
+    // scratch for k-nearest: the best candidates so far, sorted
+    private int[] nearest = new int[16];
+    private long[] nearestKeys = new long[16];
+
+    public SpatialIndex(int bucketSize) {
+        this.bucketSize = bucketSize;
+    }
+
+    public static int typeMask(model.EntityType... entityTypes) {
+        int mask = 0;
+        for (model.EntityType entityType : entityTypes) {
+            mask |= 1 << entityType.tag;
+        }
+        return mask;
+    }
+
+    public void reset(int mapSize) {
+        if (mapSize != this.mapSize) {
+            this.mapSize = mapSize;
+            bucketsPerSide = (mapSize + bucketSize - 1) / bucketSize;
+            bucketStarts = new int[bucketsPerSide * bucketsPerSide + 1];
+        }
+        Arrays.fill(entities, null);
+        slotCount = 0;
+        dirty = true;
+    }
+
+    // puts the entity in the slot, or records its new position when it is already there
+    public void set(int slot, Entity entity, int owner) {
+        if (slot >= entities.length) {
+            int capacity = Math.max(entities.length * 2, slot + 1);
+            entities = Arrays.copyOf(entities, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            typeTags = Arrays.copyOf(typeTags, capacity);
+            owners = Arrays.copyOf(owners, capacity);
+        }
+        entities[slot] = entity;
+        xs[slot] = entity.getPosition().getX();
+        ys[slot] = entity.getPosition().getY();
+        typeTags[slot] = entity.getEntityType().tag;
+        owners[slot] = owner;
+        slotCount = Math.max(slotCount, slot + 1);
+        dirty = true;
+    }
+
+    public void remove(int slot) {
+        entities[slot] = null;
+        dirty = true;
+    }
+
+    // counting sort of the occupied slots into their buckets, needed after any set or remove before querying
+    public void build() {
+        if (!dirty) return;
+        int bucketCount = bucketsPerSide * bucketsPerSide;
+        if (sortedEntities.length < slotCount) {
+            sortedEntities = new int[entities.length];
+        }
+        Arrays.fill(bucketStarts, 0);
+        int entityCount = 0;
+        for (int i = 0; i < slotCount; i++) {
+            if (entities[i] == null) continue;
+            bucketStarts[getBucket(xs[i], ys[i]) + 1]++;
+            entityCount++;
+        }
+        for (int b = 0; b < bucketCount; b++) {
+            bucketStarts[b + 1] += bucketStarts[b];
+        }
+        // filled back to front so each bucket stays in slot order, which leaves bucketStarts shifted by one
+        for (int i = slotCount - 1; i >= 0; i--) {
+            if (entities[i] == null) continue;
+            sortedEntities[--bucketStarts[getBucket(xs[i], ys[i]) + 1]] = i;
+        }
+        for (int b = 0; b < bucketCount; b++) {
+            bucketStarts[b] = bucketStarts[b + 1];
+        }
+        bucketStarts[bucketCount] = entityCount;
+        dirty = false;
+    }
+
+    private int getBucket(int x, int y) {
+        return x / bucketSize + y / bucketSize * bucketsPerSide;
+    }
+
+    private boolean matches(int index, int typeMask, int ownerMask) {
+        return (typeMask & (1 << typeTags[index])) != 0 && (ownerMask & owners[index]) != 0;
+    }
+
+    // the k nearest matching entities to (x, y), nearest first
+    public List<Entity> getNearest(int x, int y, int k, int typeMask, int ownerMask, List<Entity> result) {
+        result.clear();
+        if (k <= 0) return result;
+        if (nearest.length < k) {
+            nearest = new int[k];
+            nearestKeys = new long[k];
+        }
+        int found = 0;
+        int bucketX = Math.min(Math.max(x, 0) / bucketSize, bucketsPerSide - 1);
+        int bucketY = Math.min(Math.max(y, 0) / bucketSize, bucketsPerSide - 1);
+        // ring r holds the buckets at chebyshev distance r, none of their entities is closer than (r - 1) * bucketSize + 1
+        for (int ring = 0; ring < bucketsPerSide; ring++) {
+            if (found == k && (ring - 1) * bucketSize + 1 > (int) (nearestKeys[k - 1] >>> 40)) break;
+            for (int by = bucketY - ring; by <= bucketY + ring; by++) {
+                if (by < 0 || by >= bucketsPerSide) continue;
+                boolean edgeRow = by == bucketY - ring || by == bucketY + ring;
+                for (int bx = bucketX - ring; bx <= bucketX + ring; bx += edgeRow || ring == 0 ? 1 : 2 * ring) {
+                    if (bx < 0 || bx >= bucketsPerSide) continue;
+                    int bucket = bx + by * bucketsPerSide;
+                    for (int j = bucketStarts[bucket]; j < bucketStarts[bucket + 1]; j++) {
+                        int index = sortedEntities[j];
+                        if (!matches(index, typeMask, ownerMask)) continue;
+                        int dist = Math.abs(xs[index] - x) + Math.abs(ys[index] - y);
+                        long key = ((long) dist << 40) | ((long) typeTags[index] << 32) | index;
+                        if (found == k && key >= nearestKeys[k - 1]) continue;
+                        int i = found == k ? k - 1 : found++;
+                        while (i > 0 && nearestKeys[i - 1] > key) {
+                            nearestKeys[i] = nearestKeys[i - 1];
+                            nearest[i] = nearest[i - 1];
+                            i--;
+                        }
+                        nearestKeys[i] = key;
+                        nearest[i] = index;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < found; i++) {
+            result.add(entities[nearest[i]]);
+        }
+        return result;
+    }
+
+    // matching entities within the given manhattan distance of (x, y), in bucket order
+    public List<Entity> getWithinRadius(int x, int y, int radius, int typeMask, int ownerMask, List<Entity> result) {
+        result.clear();
+        int bucketX0 = Math.max(x - radius, 0) / bucketSize;
+        int bucketY0 = Math.max(y - radius, 0) / bucketSize;
+        int bucketX1 = Math.min(x + radius, mapSize - 1) / bucketSize;
+        int bucketY1 = Math.min(y + radius, mapSize - 1) / bucketSize;
+        for (int by = bucketY0; by <= bucketY1; by++) {
+            for (int bx = bucketX0; bx <= bucketX1; bx++) {
+                int bucket = bx + by * bucketsPerSide;
+                for (int j = bucketStarts[bucket]; j < bucketStarts[bucket + 1]; j++) {
+                    int index = sortedEntities[j];
+                    if (matches(index, typeMask, ownerMask) && Math.abs(xs[index] - x) + Math.abs(ys[index] - y) <= radius) {
+                        result.add(entities[index]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    // matching entities positioned inside [x0, x1] x [y0, y1], in bucket order
+    public List<Entity> getInRect(int x0, int y0, int x1, int y1, int typeMask, int ownerMask, List<Entity> result) {
+        result.clear();
+        int bucketX0 = Math.max(x0, 0) / bucketSize;
+        int bucketY0 = Math.max(y0, 0) / bucketSize;
+        int bucketX1 = Math.min(x1, mapSize - 1) / bucketSize;
+        int bucketY1 = Math.min(y1, mapSize - 1) / bucketSize;
+        for (int by = bucketY0; by <= bucketY1; by++) {
+            for (int bx = bucketX0; bx <= bucketX1; bx++) {
+                int bucket = bx + by * bucketsPerSide;
+                for (int j = bucketStarts[bucket]; j < bucketStarts[bucket + 1]; j++) {
+                    int index = sortedEntities[j];
+                    if (matches(index, typeMask, ownerMask) &&
+                        x0 <= xs[index] && xs[index] <= x1 && y0 <= ys[index] && ys[index] <= y1) {
+                        result.add(entities[index]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.List;
+
+import model.Entity;
+import model.EntityPropertiesTable;
+
+// free cells next to one or two of the target entities, as packed x + y * mapSize cells ordered by x then y
+// the frequency grid is kept between calls, and the sweep that collects the cells clears it for the next one
+public class TargetPositionFinder {
+    private int mapSize = 0;
+    // indexed by x * mapSize + y, so the sweep emits cells in x-major order while reading the grid linearly
+    private byte[] frequencies = new byte[0];
+    private int[] cells = new int[0];
+    private int count = 0;
+
+    public int getCount() {
+        return count;
+    }
+
+    // valid until the next call to find
+    public int[] getCells() {
+        return cells;
+    }
+
+    // binary search over the cells of the last find, they are sorted by x then y
+    public boolean contains(int cell) {
+        int key = cell % mapSize * mapSize + cell / mapSize;
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midKey = cells[mid] % mapSize * mapSize + cells[mid] / mapSize;
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void find(List<Entity> targetEntities, OccupancyGrid occupancyGrid, EntityPropertiesTable entityProperties) {
+        if (occupancyGrid.getMapSize() != mapSize) {
+            mapSize = occupancyGrid.getMapSize();
+            frequencies = new byte[mapSize * mapSize];
+            cells = new int[mapSize * mapSize];
+        }
+
+        for (Entity entity : targetEntities) {
+            int x = entity.getPosition().getX();
+            int y = entity.getPosition().getY();
+            int size = entityProperties.getSize(entity.getEntityType());
+            for (int diff = 0; diff < size; diff++) {
+                count(x + diff, y - 1, occupancyGrid);
+                count(x - 1, y + diff, occupancyGrid);
+                count(x + diff, y + size, occupancyGrid);
+                count(x + size, y + diff, occupancyGrid);
+            }
+        }
+
+        int found = 0;
+        int i = 0;
+        for (int x = 0; x < mapSize; x++) {
+            int cell = x;
+            for (int y = 0; y < mapSize; y++, i++, cell += mapSize) {
+                int frequency = frequencies[i];
+                frequencies[i] = 0;
+                cells[found] = cell;
+                // keeps the cell when its frequency is 1 or 2, without a branch
+                found += (((frequency - 1) >>> 1) - 1) >>> 31;
+            }
+        }
+        count = found;
+    }
+
+    private void count(int x, int y, OccupancyGrid occupancyGrid) {
+        if (occupancyGrid.isValidCoords(x, y) && occupancyGrid.getLevel(x, y) != OccupancyGrid.IMMOVABLE) {
+            frequencies[x * mapSize + y]++;
+        }
+    }
+}
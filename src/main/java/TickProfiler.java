@@ -0,0 +1,157 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+// times the phases of every tick and counts the bytes the calling thread allocated in them
+// a tick is startTick, then mark(phase) at the end of each phase, then endTick
+// samples are kept for the whole game, so the summary reports exact percentiles, and each tick can also go out as a csv row
+// a disabled profiler returns from every call right away
+public class TickProfiler implements Closeable {
+    public static final TickProfiler DISABLED = new TickProfiler(false, new String[0], null);
+
+    private static final long NO_ALLOCATION_COUNTER = -1;
+
+    private final boolean enabled;
+    private final String[] phaseNames;
+    private final Writer csvWriter;
+    // null when the JVM cannot count allocated bytes per thread
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    // samples[phase][tick], the last row is the whole tick
+    private long[][] nanos;
+    private long[][] bytes;
+    private int tickCount = 0;
+
+    private long tickStartNanos = 0;
+    private long tickStartBytes = 0;
+    private long markNanos = 0;
+    private long markBytes = 0;
+
+    public TickProfiler(String[] phaseNames, Writer csvWriter) {
+        this(true, phaseNames, csvWriter);
+    }
+
+    private TickProfiler(boolean enabled, String[] phaseNames, Writer csvWriter) {
+        this.enabled = enabled;
+        this.phaseNames = phaseNames;
+        this.csvWriter = csvWriter;
+        this.threadBean = enabled ? getThreadBean() : null;
+        this.nanos = new long[phaseNames.length + 1][enabled ? 1024 : 0];
+        this.bytes = new long[phaseNames.length + 1][enabled ? 1024 : 0];
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+        if (!sunThreadBean.isThreadAllocatedMemorySupported()) return null;
+        sunThreadBean.setThreadAllocatedMemoryEnabled(true);
+        return sunThreadBean;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // only the calling thread is counted, allocations of the action pool threads are not
+    private long allocatedBytes() {
+        return threadBean == null ? NO_ALLOCATION_COUNTER : threadBean.getCurrentThreadAllocatedBytes();
+    }
+
+    public void startTick() {
+        if (!enabled) return;
+        if (tickCount == nanos[0].length) {
+            for (int i = 0; i < nanos.length; i++) {
+                nanos[i] = Arrays.copyOf(nanos[i], tickCount * 2);
+                bytes[i] = Arrays.copyOf(bytes[i], tickCount * 2);
+            }
+        }
+        tickStartBytes = markBytes = allocatedBytes();
+        tickStartNanos = markNanos = System.nanoTime();
+    }
+
+    // ends the given phase, which started at the previous mark or at startTick
+    public void mark(int phase) {
+        if (!enabled) return;
+        long now = System.nanoTime();
+        long allocated = allocatedBytes();
+        nanos[phase][tickCount] += now - markNanos;
+        bytes[phase][tickCount] += allocated - markBytes;
+        markNanos = now;
+        markBytes = allocated;
+    }
+
+    public void endTick(int currentTick) throws IOException {
+        if (!enabled) return;
+        int total = phaseNames.length;
+        nanos[total][tickCount] = System.nanoTime() - tickStartNanos;
+        bytes[total][tickCount] = allocatedBytes() - tickStartBytes;
+        if (csvWriter != null) {
+            if (tickCount == 0) {
+                writeCsvHeader();
+            }
+            StringBuilder row = new StringBuilder().append(currentTick);
+            for (int i = 0; i <= total; i++) {
+                row.append(',').append(nanos[i][tickCount]);
+            }
+            for (int i = 0; i <= total; i++) {
+                row.append(',').append(threadBean == null ? "" : Long.toString(bytes[i][tickCount]));
+            }
+            csvWriter.write(row.append('\n').toString());
+        }
+        tickCount++;
+    }
+
+    private void writeCsvHeader() throws IOException {
+        StringBuilder header = new StringBuilder("tick");
+        for (String phaseName : phaseNames) {
+            header.append(',').append(phaseName).append("_ns");
+        }
+        header.append(",total_ns");
+        for (String phaseName : phaseNames) {
+            header.append(',').append(phaseName).append("_bytes");
+        }
+        csvWriter.write(header.append(",total_bytes\n").toString());
+    }
+
+    // p50, p99 and max of every phase over the ticks so far, then flushes the csv
+    public void printSummary(PrintStream out) throws IOException {
+        if (!enabled) return;
+        out.printf("%-24s %12s %12s %12s %14s %14s%n", "phase (" + tickCount + " ticks)",
+                   "p50 us", "p99 us", "max us", "p50 bytes", "max bytes");
+        for (int i = 0; i <= phaseNames.length; i++) {
+            long[] sortedNanos = Arrays.copyOf(nanos[i], tickCount);
+            long[] sortedBytes = Arrays.copyOf(bytes[i], tickCount);
+            Arrays.sort(sortedNanos);
+            Arrays.sort(sortedBytes);
+            out.printf("%-24s %12.1f %12.1f %12.1f %14s %14s%n",
+                       i < phaseNames.length ? phaseNames[i] : "total",
+                       percentile(sortedNanos, 50) / 1000.0,
+                       percentile(sortedNanos, 99) / 1000.0,
+                       percentile(sortedNanos, 100) / 1000.0,
+                       threadBean == null ? "-" : Long.toString(percentile(sortedBytes, 50)),
+                       threadBean == null ? "-" : Long.toString(percentile(sortedBytes, 100)));
+        }
+        if (csvWriter != null) {
+            csvWriter.flush();
+        }
+    }
+
+    // closes the csv writer, which the profiler owns from its construction
+    @Override
+    public void close() throws IOException {
+        if (csvWriter != null) {
+            csvWriter.close();
+        }
+    }
+
+    // nearest-rank percentile of sorted samples
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+}
@@ -0,0 +1,49 @@
+// splits the time the game allows the bot over the ticks that are left, and gives each tick a planning deadline
+// time left unused by quiet ticks is spread over the later ones
+public class TimeBudget {
+    // the planning stages stop at this share of the tick's allowance, the rest is kept for the actions and the reply
+    public static final double PLANNING_SHARE = 0.8;
+    // how often the anytime loops look at the clock
+    public static final int CHECK_INTERVAL = 64;
+
+    // an unlimited budget never expires, for benchmarks and offline runs
+    private final boolean unlimited;
+    private final long totalNanos;
+    private long usedNanos = 0;
+    private long tickStartNanos = 0;
+    private long deadlineNanos = Long.MAX_VALUE;
+
+    public TimeBudget(long totalMillis) {
+        this(false, totalMillis * 1_000_000L);
+    }
+
+    private TimeBudget(boolean unlimited, long totalNanos) {
+        this.unlimited = unlimited;
+        this.totalNanos = totalNanos;
+    }
+
+    public static TimeBudget unlimited() {
+        return new TimeBudget(true, Long.MAX_VALUE);
+    }
+
+    public void startTick(int currentTick, int maxTickCount) {
+        tickStartNanos = System.nanoTime();
+        if (unlimited) return;
+        long remainingNanos = Math.max(totalNanos - usedNanos, 0);
+        int remainingTicks = Math.max(maxTickCount - currentTick, 1);
+        deadlineNanos = tickStartNanos + (long) (remainingNanos / remainingTicks * PLANNING_SHARE);
+    }
+
+    public void endTick() {
+        usedNanos += System.nanoTime() - tickStartNanos;
+        deadlineNanos = Long.MAX_VALUE;
+    }
+
+    public boolean isExpired() {
+        return System.nanoTime() >= deadlineNanos;
+    }
+
+    public long getRemainingNanos() {
+        return Math.max(totalNanos - usedNanos, 0);
+    }
+}
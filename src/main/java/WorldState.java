@@ -0,0 +1,311 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+
+import model.Entity;
+import model.EntityArray;
+import model.EntityPropertiesTable;
+import model.EntityType;
+import model.PlayerView;
+import model.Vec2Int;
+
+// entities kept across ticks by id, together with the occupancy grid, spatial index and per-type lists built from them
+// every PlayerView is taken as a diff against the previous one, so those structures only change where the entities did
+// the entities are copies owned by the world state, never the ones of the view
+public class WorldState {
+    private static final int NO_SLOT = -1;
+
+    private final int myId;
+    private final EntityPropertiesTable entityProperties;
+
+    private final OccupancyGrid occupancyGrid = new OccupancyGrid();
+    private final SpatialIndex spatialIndex;
+    private final EnumMap<EntityType, List<Entity>> myEntities = new EnumMap<>(EntityType.class);
+    private final EnumMap<EntityType, List<Entity>> enemyEntities = new EnumMap<>(EntityType.class);
+    private final List<Entity> resources = new ArrayList<>();
+
+    // every known entity has a slot, slots of removed entities are reused
+    private final IdSlotMap slotsById = new IdSlotMap();
+    private Entity[] slotEntities = new Entity[16];
+    private int[] seenTicks = new int[16];
+    private int slotCount = 0;
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount = 0;
+    private int tick = 0;
+
+    // what the last ingest changed, moved and damaged entities come with their previous position and health
+    private final List<Entity> added = new ArrayList<>();
+    private final List<Entity> removed = new ArrayList<>();
+    private final List<Entity> moved = new ArrayList<>();
+    private final List<Vec2Int> previousPositions = new ArrayList<>();
+    private final List<Entity> damaged = new ArrayList<>();
+    private int[] previousHealths = new int[16];
+
+    public WorldState(int myId, EntityPropertiesTable entityProperties, int spatialIndexBucketSize) {
+        this.myId = myId;
+        this.entityProperties = entityProperties;
+        this.spatialIndex = new SpatialIndex(spatialIndexBucketSize);
+    }
+
+    public OccupancyGrid getOccupancyGrid() { return occupancyGrid; }
+    public SpatialIndex getSpatialIndex() { return spatialIndex; }
+    public EnumMap<EntityType, List<Entity>> getMyEntities() { return myEntities; }
+    public EnumMap<EntityType, List<Entity>> getEnemyEntities() { return enemyEntities; }
+    public List<Entity> getResources() { return resources; }
+
+    public List<Entity> getAdded() { return added; }
+    public List<Entity> getRemoved() { return removed; }
+    public List<Entity> getMoved() { return moved; }
+    public Vec2Int getPreviousPosition(int movedIndex) { return previousPositions.get(movedIndex); }
+    public List<Entity> getDamaged() { return damaged; }
+    public int getPreviousHealth(int damagedIndex) { return previousHealths[damagedIndex]; }
+
+    public Entity getEntity(int id) {
+        int slot = slotsById.get(id);
+        return slot == NO_SLOT ? null : slotEntities[slot];
+    }
+
+    public void ingest(PlayerView playerView) {
+        if (playerView.getMapSize() != occupancyGrid.getMapSize()) {
+            clear(playerView.getMapSize());
+        }
+        tick++;
+        added.clear();
+        removed.clear();
+        moved.clear();
+        previousPositions.clear();
+        damaged.clear();
+
+        EntityArray entityArray = playerView.getEntityArray();
+        if (entityArray == null) {
+            for (Entity entity : playerView.getEntities()) {
+                see(entity.getId(),
+                    entity.getPlayerId() == null ? EntityArray.NO_PLAYER_ID : entity.getPlayerId(),
+                    entity.getEntityType(),
+                    entity.getPosition().getX(),
+                    entity.getPosition().getY(),
+                    entity.getHealth(),
+                    entity.isActive());
+            }
+        } else {
+            for (int i = 0; i < entityArray.size(); i++) {
+                see(entityArray.getId(i),
+                    entityArray.getPlayerId(i),
+                    entityArray.getEntityType(i),
+                    entityArray.getX(i),
+                    entityArray.getY(i),
+                    entityArray.getHealth(i),
+                    entityArray.isActive(i));
+            }
+        }
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (slotEntities[slot] != null && seenTicks[slot] != tick) {
+                removed.add(slotEntities[slot]);
+            }
+        }
+
+        // everything leaves its old cells before anything takes new ones, a unit may step where another one was
+        for (Entity entity : removed) {
+            vacate(entity, entity.getPosition());
+            removeFromLists(entity);
+            int slot = slotsById.remove(entity.getId());
+            spatialIndex.remove(slot);
+            slotEntities[slot] = null;
+            if (freeSlotCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+            }
+            freeSlots[freeSlotCount++] = slot;
+        }
+        for (int i = 0; i < moved.size(); i++) {
+            vacate(moved.get(i), previousPositions.get(i));
+        }
+        for (Entity entity : added) {
+            occupy(entity);
+            addToLists(entity);
+        }
+        for (Entity entity : moved) {
+            occupy(entity);
+        }
+        occupancyGrid.buildSums();
+        spatialIndex.build();
+    }
+
+    private void clear(int mapSize) {
+        occupancyGrid.reset(mapSize);
+        spatialIndex.reset(mapSize);
+        myEntities.clear();
+        enemyEntities.clear();
+        resources.clear();
+        slotsById.clear();
+        Arrays.fill(slotEntities, null);
+        slotCount = 0;
+        freeSlotCount = 0;
+    }
+
+    private void see(int id, int playerId, EntityType entityType, int x, int y, int health, boolean active) {
+        int slot = slotsById.get(id);
+        if (slot == NO_SLOT) {
+            slot = freeSlotCount > 0 ? freeSlots[--freeSlotCount] : slotCount++;
+            if (slot == slotEntities.length) {
+                slotEntities = Arrays.copyOf(slotEntities, slotEntities.length * 2);
+                seenTicks = Arrays.copyOf(seenTicks, seenTicks.length * 2);
+            }
+            Entity entity = new Entity(id,
+                                       playerId == EntityArray.NO_PLAYER_ID ? null : playerId,
+                                       entityType,
+                                       new Vec2Int(x, y),
+                                       health,
+                                       active);
+            slotsById.put(id, slot);
+            slotEntities[slot] = entity;
+            seenTicks[slot] = tick;
+            added.add(entity);
+            return;
+        }
+
+        seenTicks[slot] = tick;
+        Entity entity = slotEntities[slot];
+        Vec2Int position = entity.getPosition();
+        if (position.getX() != x || position.getY() != y) {
+            moved.add(entity);
+            previousPositions.add(position);
+            entity.setPosition(new Vec2Int(x, y));
+        }
+        if (entity.getHealth() != health) {
+            if (damaged.size() == previousHealths.length) {
+                previousHealths = Arrays.copyOf(previousHealths, previousHealths.length * 2);
+            }
+            previousHealths[damaged.size()] = entity.getHealth();
+            damaged.add(entity);
+            entity.setHealth(health);
+        }
+        entity.setActive(active);
+    }
+
+    private boolean isMine(Entity entity) {
+        return entity.getPlayerId() != null && entity.getPlayerId() == myId;
+    }
+
+    private int getOwnerClass(Entity entity) {
+        if (isMine(entity)) return SpatialIndex.OWNER_ME;
+        return entity.getEntityType() == EntityType.RESOURCE ? SpatialIndex.OWNER_NONE : SpatialIndex.OWNER_ENEMY;
+    }
+
+    private void occupy(Entity entity) {
+        EntityType entityType = entity.getEntityType();
+        occupancyGrid.occupy(entity.getPosition().getX(),
+                             entity.getPosition().getY(),
+                             entityProperties.getSize(entityType),
+                             entityProperties.canMove(entityType) ? OccupancyGrid.MOVABLE : OccupancyGrid.IMMOVABLE,
+                             entityType.tag,
+                             entity.getPlayerId() == null ? OccupancyGrid.NO_OWNER : entity.getPlayerId(),
+                             entity.getId());
+        spatialIndex.set(slotsById.get(entity.getId()), entity, getOwnerClass(entity));
+    }
+
+    private void vacate(Entity entity, Vec2Int position) {
+        occupancyGrid.vacate(position.getX(),
+                             position.getY(),
+                             entityProperties.getSize(entity.getEntityType()),
+                             entity.getId());
+    }
+
+    private List<Entity> getList(Entity entity) {
+        if (isMine(entity)) {
+            return myEntities.computeIfAbsent(entity.getEntityType(), entityType -> new ArrayList<>());
+        } else if (entity.getEntityType() == EntityType.RESOURCE) {
+            return resources;
+        }
+        return enemyEntities.computeIfAbsent(entity.getEntityType(), entityType -> new ArrayList<>());
+    }
+
+    private void addToLists(Entity entity) {
+        getList(entity).add(entity);
+    }
+
+    private void removeFromLists(Entity entity) {
+        List<Entity> entities = getList(entity);
+        for (int i = entities.size() - 1; i >= 0; i--) {
+            if (entities.get(i) == entity) {
+                entities.remove(i);
+                break;
+            }
+        }
+    }
+
+    // open addressing from entity id to slot, so looking up the entities of a view doesn't box their ids
+    private static class IdSlotMap {
+        private static final int NO_KEY = Integer.MIN_VALUE;
+
+        private int[] keys = newKeys(64);
+        private int[] values = new int[64];
+        private int size = 0;
+
+        private static int[] newKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, NO_KEY);
+            return keys;
+        }
+
+        private int indexOf(int key) {
+            return (key * 0x9E3779B9) >>> 1 & (keys.length - 1);
+        }
+
+        int get(int key) {
+            for (int i = indexOf(key); keys[i] != NO_KEY; i = (i + 1) & (keys.length - 1)) {
+                if (keys[i] == key) return values[i];
+            }
+            return NO_SLOT;
+        }
+
+        void put(int key, int value) {
+            if (2 * (size + 1) > keys.length) {
+                int[] oldKeys = keys;
+                int[] oldValues = values;
+                keys = newKeys(oldKeys.length * 2);
+                values = new int[oldKeys.length * 2];
+                size = 0;
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != NO_KEY) put(oldKeys[i], oldValues[i]);
+                }
+            }
+            int i = indexOf(key);
+            while (keys[i] != NO_KEY && keys[i] != key) {
+                i = (i + 1) & (keys.length - 1);
+            }
+            if (keys[i] == NO_KEY) size++;
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        // removes the key and returns its value, later entries of the probe run are shifted back into the gap
+        int remove(int key) {
+            int i = indexOf(key);
+            while (keys[i] != key) {
+                if (keys[i] == NO_KEY) return NO_SLOT;
+                i = (i + 1) & (keys.length - 1);
+            }
+            int value = values[i];
+            int gap = i;
+            for (int j = (i + 1) & (keys.length - 1); keys[j] != NO_KEY; j = (j + 1) & (keys.length - 1)) {
+                int home = indexOf(keys[j]);
+                // the entry at j can fill the gap unless its home lies cyclically in (gap, j]
+                boolean homeBetween = gap <= j ? gap < home && home <= j : gap < home || home <= j;
+                if (!homeBetween) {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    gap = j;
+                }
+            }
+            keys[gap] = NO_KEY;
+            size--;
+            return value;
+        }
+
+        void clear() {
+            Arrays.fill(keys, NO_KEY);
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package model;
+
+// collects emitted actions into an Action, for callers that need the objects rather than the encoded message
+public class ActionBuilder implements ActionSink {
+    private java.util.Map<Integer, model.EntityAction> entityActions = new java.util.HashMap<>();
+    private int entityId;
+    private model.EntityAction entityAction = null;
+
+    @Override
+    public void beginEntity(int entityId) {
+        this.entityId = entityId;
+        this.entityAction = new model.EntityAction();
+    }
+
+    @Override
+    public void move(int x, int y, boolean findClosestPosition, boolean breakThrough) {
+        entityAction.setMoveAction(new model.MoveAction(new model.Vec2Int(x, y), findClosestPosition, breakThrough));
+    }
+
+    @Override
+    public void build(model.EntityType entityType, int x, int y) {
+        entityAction.setBuildAction(new model.BuildAction(entityType, new model.Vec2Int(x, y)));
+    }
+
+    @Override
+    public void attack(int targetId) {
+        getAttackAction().setTarget(targetId);
+    }
+
+    @Override
+    public void autoAttack(int pathfindRange, model.EntityType[] validTargets) {
+        getAttackAction().setAutoAttack(new model.AutoAttack(pathfindRange, validTargets));
+    }
+
+    private model.AttackAction getAttackAction() {
+        if (entityAction.getAttackAction() == null) {
+            entityAction.setAttackAction(new model.AttackAction(null, null));
+        }
+        return entityAction.getAttackAction();
+    }
+
+    @Override
+    public void repair(int targetId) {
+        entityAction.setRepairAction(new model.RepairAction(targetId));
+    }
+
+    @Override
+    public void endEntity() {
+        entityActions.put(entityId, entityAction);
+        entityAction = null;
+    }
+
+    @Override
+    public ActionSink newSegment() {
+        return new ActionBuilder();
+    }
+
+    @Override
+    public void append(ActionSink segment) {
+        entityActions.putAll(((ActionBuilder) segment).entityActions);
+    }
+
+    // the action of everything emitted so far, the builder starts over empty
+    public model.Action build() {
+        model.Action action = new model.Action(entityActions);
+        entityActions = new java.util.HashMap<>();
+        return action;
+    }
+}
@@ -0,0 +1,27 @@
+package model;
+
+// receives the actions of a tick entity by entity, so they can be encoded as they are computed instead of built as objects first
+// an entity's action is started with beginEntity and finished with endEntity, its parts may come in any order in between
+// parts that are left out stay empty, as the null fields of an EntityAction
+public interface ActionSink {
+    void beginEntity(int entityId);
+
+    void move(int x, int y, boolean findClosestPosition, boolean breakThrough);
+
+    void build(model.EntityType entityType, int x, int y);
+
+    void attack(int targetId);
+
+    // the valid targets are not copied, they must not change until the entity is finished
+    void autoAttack(int pathfindRange, model.EntityType[] validTargets);
+
+    void repair(int targetId);
+
+    void endEntity();
+
+    // an empty sink of the same kind, to be filled on another thread and then appended, so actions can be computed in parallel
+    ActionSink newSegment();
+
+    // adds the entities of a sink made by newSegment after the ones emitted so far
+    void append(ActionSink segment);
+}
@@ -0,0 +1,180 @@
+package model;
+
+// encodes emitted actions straight into an ActionMessage, without building the EntityAction objects
+// entities are written in the order they are finished, and their count is patched into the header when the message is written
+// a writer is reset and reused every tick, its buffer grows to the largest tick seen
+public class ActionWriter extends model.ClientMessage implements ActionSink {
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+    // the message tag comes first, then the entity count
+    private static final int COUNT_OFFSET = Integer.BYTES;
+    // an entity with every part present, not counting the auto attack's valid targets
+    private static final int MAX_ENTITY_BYTES = 48;
+
+    // segments hold entities only, without the message header
+    private final boolean segment;
+    private java.nio.ByteBuffer buffer;
+    private int entityCount = 0;
+
+    // parts of the entity being emitted, kept until endEntity since the wire order is fixed
+    private int entityId;
+    private boolean hasMove;
+    private int moveX;
+    private int moveY;
+    private boolean moveFindClosestPosition;
+    private boolean moveBreakThrough;
+    private model.EntityType buildEntityType;
+    private int buildX;
+    private int buildY;
+    private boolean hasAttackTarget;
+    private int attackTargetId;
+    private model.EntityType[] autoAttackValidTargets;
+    private int autoAttackPathfindRange;
+    private boolean hasRepair;
+    private int repairTargetId;
+
+    public ActionWriter() {
+        this(DEFAULT_CAPACITY, false);
+    }
+
+    private ActionWriter(int capacity, boolean segment) {
+        this.segment = segment;
+        this.buffer = java.nio.ByteBuffer.allocate(capacity).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        reset();
+    }
+
+    // drops everything emitted so far
+    public void reset() {
+        buffer.clear();
+        entityCount = 0;
+        if (!segment) {
+            buffer.putInt(model.ClientMessage.ActionMessage.TAG);
+            buffer.putInt(0);
+        }
+    }
+
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    private void ensureCapacity(int byteCount) {
+        if (buffer.remaining() < byteCount) {
+            java.nio.ByteBuffer grown = java.nio.ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + byteCount))
+                .order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    @Override
+    public void beginEntity(int entityId) {
+        this.entityId = entityId;
+        hasMove = false;
+        buildEntityType = null;
+        hasAttackTarget = false;
+        autoAttackValidTargets = null;
+        hasRepair = false;
+    }
+
+    @Override
+    public void move(int x, int y, boolean findClosestPosition, boolean breakThrough) {
+        hasMove = true;
+        moveX = x;
+        moveY = y;
+        moveFindClosestPosition = findClosestPosition;
+        moveBreakThrough = breakThrough;
+    }
+
+    @Override
+    public void build(model.EntityType entityType, int x, int y) {
+        buildEntityType = entityType;
+        buildX = x;
+        buildY = y;
+    }
+
+    @Override
+    public void attack(int targetId) {
+        hasAttackTarget = true;
+        attackTargetId = targetId;
+    }
+
+    @Override
+    public void autoAttack(int pathfindRange, model.EntityType[] validTargets) {
+        autoAttackPathfindRange = pathfindRange;
+        autoAttackValidTargets = validTargets;
+    }
+
+    @Override
+    public void repair(int targetId) {
+        hasRepair = true;
+        repairTargetId = targetId;
+    }
+
+    // the same bytes as writing the entry of an Action's map
+    @Override
+    public void endEntity() {
+        ensureCapacity(MAX_ENTITY_BYTES + (autoAttackValidTargets == null ? 0 : Integer.BYTES * autoAttackValidTargets.length));
+        buffer.putInt(entityId);
+        putBoolean(hasMove);
+        if (hasMove) {
+            buffer.putInt(moveX);
+            buffer.putInt(moveY);
+            putBoolean(moveFindClosestPosition);
+            putBoolean(moveBreakThrough);
+        }
+        putBoolean(buildEntityType != null);
+        if (buildEntityType != null) {
+            buffer.putInt(buildEntityType.tag);
+            buffer.putInt(buildX);
+            buffer.putInt(buildY);
+        }
+        boolean hasAttack = hasAttackTarget || autoAttackValidTargets != null;
+        putBoolean(hasAttack);
+        if (hasAttack) {
+            putBoolean(hasAttackTarget);
+            if (hasAttackTarget) {
+                buffer.putInt(attackTargetId);
+            }
+            putBoolean(autoAttackValidTargets != null);
+            if (autoAttackValidTargets != null) {
+                buffer.putInt(autoAttackPathfindRange);
+                buffer.putInt(autoAttackValidTargets.length);
+                for (model.EntityType validTarget : autoAttackValidTargets) {
+                    buffer.putInt(validTarget.tag);
+                }
+            }
+        }
+        putBoolean(hasRepair);
+        if (hasRepair) {
+            buffer.putInt(repairTargetId);
+        }
+        entityCount++;
+    }
+
+    private void putBoolean(boolean value) {
+        buffer.put((byte) (value ? 1 : 0));
+    }
+
+    @Override
+    public ActionSink newSegment() {
+        return new ActionWriter(MAX_ENTITY_BYTES * 16, true);
+    }
+
+    @Override
+    public void append(ActionSink segment) {
+        ActionWriter segmentWriter = (ActionWriter) segment;
+        ensureCapacity(segmentWriter.buffer.position());
+        buffer.put(segmentWriter.buffer.array(), 0, segmentWriter.buffer.position());
+        entityCount += segmentWriter.entityCount;
+    }
+
+    // writes the whole ActionMessage
+    @Override
+    public void writeTo(java.io.OutputStream stream) throws java.io.IOException {
+        if (segment) {
+            throw new IllegalStateException("A segment is not a message");
+        }
+        buffer.putInt(COUNT_OFFSET, entityCount);
+        stream.write(buffer.array(), 0, buffer.position());
+    }
+}
@@ -0,0 +1,104 @@
+package model;
+
+import util.StreamUtil;
+
+// struct-of-arrays view over the entities of a PlayerView, reused across ticks so decoding allocates nothing
+public class EntityArray {
+    public static final int NO_PLAYER_ID = -1;
+
+    private static final model.EntityType[] ENTITY_TYPES_BY_TAG = new model.EntityType[model.EntityType.values().length];
+    static {
+        for (model.EntityType entityType : model.EntityType.values()) {
+            ENTITY_TYPES_BY_TAG[entityType.tag] = entityType;
+        }
+    }
+
+    private int size;
+    private int[] ids = new int[0];
+    private int[] playerIds = new int[0];
+    private int[] entityTypeTags = new int[0];
+    private int[] xs = new int[0];
+    private int[] ys = new int[0];
+    private int[] healths = new int[0];
+    private boolean[] active = new boolean[0];
+
+    public int size() { return size; }
+    public int getId(int index) { return ids[index]; }
+    public boolean hasPlayerId(int index) { return playerIds[index] != NO_PLAYER_ID; }
+    public int getPlayerId(int index) { return playerIds[index]; }
+    public int getEntityTypeTag(int index) { return entityTypeTags[index]; }
+    public model.EntityType getEntityType(int index) { return ENTITY_TYPES_BY_TAG[entityTypeTags[index]]; }
+    public int getX(int index) { return xs[index]; }
+    public int getY(int index) { return ys[index]; }
+    public int getHealth(int index) { return healths[index]; }
+    public boolean isActive(int index) { return active[index]; }
+
+    public model.Entity getEntity(int index) {
+        return new model.Entity(ids[index],
+                                hasPlayerId(index) ? playerIds[index] : null,
+                                getEntityType(index),
+                                new model.Vec2Int(xs[index], ys[index]),
+                                healths[index],
+                                active[index]);
+    }
+
+    public model.Entity[] toEntities() {
+        model.Entity[] entities = new model.Entity[size];
+        for (int i = 0; i < size; i++) {
+            entities[i] = getEntity(i);
+        }
+        return entities;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (ids.length >= capacity) return;
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = java.util.Arrays.copyOf(ids, newCapacity);
+        playerIds = java.util.Arrays.copyOf(playerIds, newCapacity);
+        entityTypeTags = java.util.Arrays.copyOf(entityTypeTags, newCapacity);
+        xs = java.util.Arrays.copyOf(xs, newCapacity);
+        ys = java.util.Arrays.copyOf(ys, newCapacity);
+        healths = java.util.Arrays.copyOf(healths, newCapacity);
+        active = java.util.Arrays.copyOf(active, newCapacity);
+    }
+
+    public void readFrom(java.io.InputStream stream) throws java.io.IOException {
+        size = StreamUtil.readInt(stream);
+        ensureCapacity(size);
+        for (int i = 0; i < size; i++) {
+            ids[i] = StreamUtil.readInt(stream);
+            if (StreamUtil.readBoolean(stream)) {
+                playerIds[i] = StreamUtil.readInt(stream);
+            } else {
+                playerIds[i] = NO_PLAYER_ID;
+            }
+            int entityTypeTag = StreamUtil.readInt(stream);
+            if (entityTypeTag < 0 || entityTypeTag >= ENTITY_TYPES_BY_TAG.length) {
+                throw new java.io.IOException("Unexpected tag value");
+            }
+            entityTypeTags[i] = entityTypeTag;
+            xs[i] = StreamUtil.readInt(stream);
+            ys[i] = StreamUtil.readInt(stream);
+            healths[i] = StreamUtil.readInt(stream);
+            active[i] = StreamUtil.readBoolean(stream);
+        }
+    }
+
+    public void writeTo(java.io.OutputStream stream) throws java.io.IOException {
+        StreamUtil.writeInt(stream, size);
+        for (int i = 0; i < size; i++) {
+            StreamUtil.writeInt(stream, ids[i]);
+            if (playerIds[i] == NO_PLAYER_ID) {
+                StreamUtil.writeBoolean(stream, false);
+            } else {
+                StreamUtil.writeBoolean(stream, true);
+                StreamUtil.writeInt(stream, playerIds[i]);
+            }
+            StreamUtil.writeInt(stream, entityTypeTags[i]);
+            StreamUtil.writeInt(stream, xs[i]);
+            StreamUtil.writeInt(stream, ys[i]);
+            StreamUtil.writeInt(stream, healths[i]);
+            StreamUtil.writeBoolean(stream, active[i]);
+        }
+    }
+}
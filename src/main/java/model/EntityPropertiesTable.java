@@ -0,0 +1,46 @@
+package model;
+
+// entity properties indexed by EntityType tag, with the per-type flags that are queried for every entity
+public class EntityPropertiesTable {
+    private final model.EntityProperties[] properties;
+    private final boolean[] canMove;
+    private final boolean[] attacker;
+    private final boolean[] repairable;
+    private final int[] size;
+
+    public EntityPropertiesTable(java.util.Map<model.EntityType, model.EntityProperties> entityProperties) {
+        int typeCount = model.EntityType.values().length;
+        properties = new model.EntityProperties[typeCount];
+        canMove = new boolean[typeCount];
+        attacker = new boolean[typeCount];
+        repairable = new boolean[typeCount];
+        size = new int[typeCount];
+        for (java.util.Map.Entry<model.EntityType, model.EntityProperties> entry : entityProperties.entrySet()) {
+            int tag = entry.getKey().tag;
+            model.EntityProperties entityTypeProperties = entry.getValue();
+            properties[tag] = entityTypeProperties;
+            canMove[tag] = entityTypeProperties.isCanMove();
+            // units that collect resources (builders) are not counted as attackers
+            attacker[tag] = entityTypeProperties.isCanMove() &&
+                            entityTypeProperties.getAttack() != null &&
+                            !entityTypeProperties.getAttack().isCollectResource();
+            size[tag] = entityTypeProperties.getSize();
+            if (entityTypeProperties.getRepair() != null) {
+                for (model.EntityType validTarget : entityTypeProperties.getRepair().getValidTargets()) {
+                    repairable[validTarget.tag] = true;
+                }
+            }
+        }
+    }
+
+    public model.EntityProperties get(model.EntityType entityType) { return properties[entityType.tag]; }
+    public model.EntityProperties get(int tag) { return properties[tag]; }
+    public boolean canMove(model.EntityType entityType) { return canMove[entityType.tag]; }
+    public boolean canMove(int tag) { return canMove[tag]; }
+    public boolean isAttacker(model.EntityType entityType) { return attacker[entityType.tag]; }
+    public boolean isAttacker(int tag) { return attacker[tag]; }
+    public boolean isRepairable(model.EntityType entityType) { return repairable[entityType.tag]; }
+    public boolean isRepairable(int tag) { return repairable[tag]; }
+    public int getSize(model.EntityType entityType) { return size[entityType.tag]; }
+    public int getSize(int tag) { return size[tag]; }
+}
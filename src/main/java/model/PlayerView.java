@@ -14,7 +14,14 @@ public class PlayerView {
     public void setFogOfWar(boolean fogOfWar) { this.fogOfWar = fogOfWar; }
     private java.util.Map<model.EntityType, model.EntityProperties> entityProperties;
     public java.util.Map<model.EntityType, model.EntityProperties> getEntityProperties() { return entityProperties; }
-    public void setEntityProperties(java.util.Map<model.EntityType, model.EntityProperties> entityProperties) { this.entityProperties = entityProperties; }
+    public void setEntityProperties(java.util.Map<model.EntityType, model.EntityProperties> entityProperties) { this.entityProperties = entityProperties; this.entityPropertiesTable = null; }
+    private model.EntityPropertiesTable entityPropertiesTable;
+    public model.EntityPropertiesTable getEntityPropertiesTable() {
+        if (entityPropertiesTable == null) {
+            entityPropertiesTable = new model.EntityPropertiesTable(entityProperties);
+        }
+        return entityPropertiesTable;
+    }
     private int maxTickCount;
     public int getMaxTickCount() { return maxTickCount; }
     public void setMaxTickCount(int maxTickCount) { this.maxTickCount = maxTickCount; }
@@ -28,8 +35,16 @@ public class PlayerView {
     public model.Player[] getPlayers() { return players; }
     public void setPlayers(model.Player[] players) { this.players = players; }
     private model.Entity[] entities;
-    public model.Entity[] getEntities() { return entities; }
-    public void setEntities(model.Entity[] entities) { this.entities = entities; }
+    public model.Entity[] getEntities() {
+        if (entities == null && entityArray != null) {
+            entities = entityArray.toEntities();
+        }
+        return entities;
+    }
+    public void setEntities(model.Entity[] entities) { this.entities = entities; this.entityArray = null; }
+    // only set when decoded with a packed PlayerViewReader, valid until the reader decodes the next view
+    private model.EntityArray entityArray;
+    public model.EntityArray getEntityArray() { return entityArray; }
     public PlayerView() {}
     public PlayerView(int myId, int mapSize, boolean fogOfWar, java.util.Map<model.EntityType, model.EntityProperties> entityProperties, int maxTickCount, int maxPathfindNodes, int currentTick, model.Player[] players, model.Entity[] entities) {
         this.myId = myId;
@@ -43,12 +58,39 @@ public class PlayerView {
         this.entities = entities;
     }
     public static PlayerView readFrom(java.io.InputStream stream) throws java.io.IOException {
+        return readFrom(stream, null);
+    }
+    public static PlayerView readFrom(java.io.InputStream stream, model.PlayerViewReader reader) throws java.io.IOException {
         PlayerView result = new PlayerView();
         result.myId = StreamUtil.readInt(stream);
         result.mapSize = StreamUtil.readInt(stream);
         result.fogOfWar = StreamUtil.readBoolean(stream);
+        if (reader != null && reader.isCacheEntityProperties()) {
+            result.entityProperties = reader.readEntityProperties(stream);
+            result.entityPropertiesTable = reader.getEntityPropertiesTable();
+        } else {
+            result.entityProperties = readEntityProperties(stream);
+        }
+        result.maxTickCount = StreamUtil.readInt(stream);
+        result.maxPathfindNodes = StreamUtil.readInt(stream);
+        result.currentTick = StreamUtil.readInt(stream);
+        result.players = new model.Player[StreamUtil.readInt(stream)];
+        for (int i = 0; i < result.players.length; i++) {
+            result.players[i] = model.Player.readFrom(stream);
+        }
+        if (reader != null && reader.isPackedEntities()) {
+            result.entityArray = reader.readEntityArray(stream);
+            return result;
+        }
+        result.entities = new model.Entity[StreamUtil.readInt(stream)];
+        for (int i = 0; i < result.entities.length; i++) {
+            result.entities[i] = model.Entity.readFrom(stream);
+        }
+        return result;
+    }
+    static java.util.Map<model.EntityType, model.EntityProperties> readEntityProperties(java.io.InputStream stream) throws java.io.IOException {
         int entityPropertiesSize = StreamUtil.readInt(stream);
-        result.entityProperties = new java.util.HashMap<>(entityPropertiesSize);
+        java.util.Map<model.EntityType, model.EntityProperties> entityProperties = new java.util.EnumMap<>(model.EntityType.class);
         for (int i = 0; i < entityPropertiesSize; i++) {
             model.EntityType entityPropertiesKey;
             switch (StreamUtil.readInt(stream)) {
@@ -87,20 +129,9 @@ public class PlayerView {
             }
             model.EntityProperties entityPropertiesValue;
             entityPropertiesValue = model.EntityProperties.readFrom(stream);
-            result.entityProperties.put(entityPropertiesKey, entityPropertiesValue);
-        }
-        result.maxTickCount = StreamUtil.readInt(stream);
-        result.maxPathfindNodes = StreamUtil.readInt(stream);
-        result.currentTick = StreamUtil.readInt(stream);
-        result.players = new model.Player[StreamUtil.readInt(stream)];
-        for (int i = 0; i < result.players.length; i++) {
-            result.players[i] = model.Player.readFrom(stream);
-        }
-        result.entities = new model.Entity[StreamUtil.readInt(stream)];
-        for (int i = 0; i < result.entities.length; i++) {
-            result.entities[i] = model.Entity.readFrom(stream);
+            entityProperties.put(entityPropertiesKey, entityPropertiesValue);
         }
-        return result;
+        return entityProperties;
     }
     public void writeTo(java.io.OutputStream stream) throws java.io.IOException {
         StreamUtil.writeInt(stream, myId);
@@ -120,6 +151,10 @@ public class PlayerView {
         for (model.Player playersElement : players) {
             playersElement.writeTo(stream);
         }
+        if (entities == null && entityArray != null) {
+            entityArray.writeTo(stream);
+            return;
+        }
         StreamUtil.writeInt(stream, entities.length);
         for (model.Entity entitiesElement : entities) {
             entitiesElement.writeTo(stream);
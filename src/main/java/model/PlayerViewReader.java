@@ -0,0 +1,124 @@
+package model;
+
+import util.StreamUtil;
+
+// per-connection decoding state for PlayerView, so buffers can be reused from one tick to the next
+public class PlayerViewReader {
+    private final boolean packedEntities;
+    public boolean isPackedEntities() { return packedEntities; }
+    private final boolean cacheEntityProperties;
+    public boolean isCacheEntityProperties() { return cacheEntityProperties; }
+
+    private final model.EntityArray entityArray = new model.EntityArray();
+
+    // raw bytes of the last decoded entity properties block, and the block currently being read
+    private byte[] entityPropertiesBytes = new byte[1024];
+    private int entityPropertiesLength = -1;
+    private byte[] nextEntityPropertiesBytes = new byte[1024];
+    private int nextEntityPropertiesLength = 0;
+    private java.util.Map<model.EntityType, model.EntityProperties> entityProperties = null;
+    private model.EntityPropertiesTable entityPropertiesTable = null;
+    model.EntityPropertiesTable getEntityPropertiesTable() { return entityPropertiesTable; }
+
+    public PlayerViewReader(boolean packedEntities) {
+        this(packedEntities, false);
+    }
+
+    public PlayerViewReader(boolean packedEntities, boolean cacheEntityProperties) {
+        this.packedEntities = packedEntities;
+        this.cacheEntityProperties = cacheEntityProperties;
+    }
+
+    // the returned array is overwritten by the next read
+    model.EntityArray readEntityArray(java.io.InputStream stream) throws java.io.IOException {
+        entityArray.readFrom(stream);
+        return entityArray;
+    }
+
+    // the returned map and its properties are shared between views and must not be modified
+    java.util.Map<model.EntityType, model.EntityProperties> readEntityProperties(java.io.InputStream stream) throws java.io.IOException {
+        nextEntityPropertiesLength = 0;
+        int entityPropertiesSize = copyInt(stream);
+        for (int i = 0; i < entityPropertiesSize; i++) {
+            copyInt(stream);
+            copyEntityProperties(stream);
+        }
+        if (entityProperties != null &&
+            java.util.Arrays.equals(entityPropertiesBytes, 0, entityPropertiesLength,
+                                    nextEntityPropertiesBytes, 0, nextEntityPropertiesLength)) {
+            return entityProperties;
+        }
+
+        entityProperties = java.util.Collections.unmodifiableMap(model.PlayerView.readEntityProperties(
+            new java.io.ByteArrayInputStream(nextEntityPropertiesBytes, 0, nextEntityPropertiesLength)));
+        entityPropertiesTable = new model.EntityPropertiesTable(entityProperties);
+        byte[] bytes = entityPropertiesBytes;
+        entityPropertiesBytes = nextEntityPropertiesBytes;
+        entityPropertiesLength = nextEntityPropertiesLength;
+        nextEntityPropertiesBytes = bytes;
+        return entityProperties;
+    }
+
+    // walks the wire layout of EntityProperties without building any objects
+    private void copyEntityProperties(java.io.InputStream stream) throws java.io.IOException {
+        copyInt(stream); // size
+        copyInt(stream); // buildScore
+        copyInt(stream); // destroyScore
+        copyBoolean(stream); // canMove
+        copyInt(stream); // populationProvide
+        copyInt(stream); // populationUse
+        copyInt(stream); // maxHealth
+        copyInt(stream); // initialCost
+        copyInt(stream); // sightRange
+        copyInt(stream); // resourcePerHealth
+        if (copyBoolean(stream)) {
+            copyEntityTypes(stream); // build.options
+            if (copyBoolean(stream)) {
+                copyInt(stream); // build.initHealth
+            }
+        }
+        if (copyBoolean(stream)) {
+            copyInt(stream); // attack.attackRange
+            copyInt(stream); // attack.damage
+            copyBoolean(stream); // attack.collectResource
+        }
+        if (copyBoolean(stream)) {
+            copyEntityTypes(stream); // repair.validTargets
+            copyInt(stream); // repair.power
+        }
+    }
+
+    private void copyEntityTypes(java.io.InputStream stream) throws java.io.IOException {
+        int length = copyInt(stream);
+        for (int i = 0; i < length; i++) {
+            copyInt(stream);
+        }
+    }
+
+    private void ensureNextCapacity(int byteCount) {
+        if (nextEntityPropertiesLength + byteCount > nextEntityPropertiesBytes.length) {
+            nextEntityPropertiesBytes = java.util.Arrays.copyOf(nextEntityPropertiesBytes, nextEntityPropertiesBytes.length * 2);
+        }
+    }
+
+    private int copyInt(java.io.InputStream stream) throws java.io.IOException {
+        int value = StreamUtil.readInt(stream);
+        ensureNextCapacity(Integer.BYTES);
+        nextEntityPropertiesBytes[nextEntityPropertiesLength++] = (byte) value;
+        nextEntityPropertiesBytes[nextEntityPropertiesLength++] = (byte) (value >> 8);
+        nextEntityPropertiesBytes[nextEntityPropertiesLength++] = (byte) (value >> 16);
+        nextEntityPropertiesBytes[nextEntityPropertiesLength++] = (byte) (value >> 24);
+        return value;
+    }
+
+    private boolean copyBoolean(java.io.InputStream stream) throws java.io.IOException {
+        boolean value = StreamUtil.readBoolean(stream);
+        ensureNextCapacity(1);
+        nextEntityPropertiesBytes[nextEntityPropertiesLength++] = (byte) (value ? 1 : 0);
+        return value;
+    }
+
+    public model.PlayerView read(java.io.InputStream stream) throws java.io.IOException {
+        return model.PlayerView.readFrom(stream, this);
+    }
+}
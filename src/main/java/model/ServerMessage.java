@@ -5,13 +5,16 @@ import util.StreamUtil;
 public abstract class ServerMessage {
     public abstract void writeTo(java.io.OutputStream stream) throws java.io.IOException;
     public static ServerMessage readFrom(java.io.InputStream stream) throws java.io.IOException {
+        return readFrom(stream, null);
+    }
+    public static ServerMessage readFrom(java.io.InputStream stream, model.PlayerViewReader reader) throws java.io.IOException {
         switch (StreamUtil.readInt(stream)) {
             case GetAction.TAG:
-                return GetAction.readFrom(stream);
+                return GetAction.readFrom(stream, reader);
             case Finish.TAG:
                 return Finish.readFrom(stream);
             case DebugUpdate.TAG:
-                return DebugUpdate.readFrom(stream);
+                return DebugUpdate.readFrom(stream, reader);
             default:
                 throw new java.io.IOException("Unexpected tag value");
         }
@@ -31,8 +34,11 @@ public abstract class ServerMessage {
             this.debugAvailable = debugAvailable;
         }
         public static GetAction readFrom(java.io.InputStream stream) throws java.io.IOException {
+            return readFrom(stream, null);
+        }
+        public static GetAction readFrom(java.io.InputStream stream, model.PlayerViewReader reader) throws java.io.IOException {
             GetAction result = new GetAction();
-            result.playerView = model.PlayerView.readFrom(stream);
+            result.playerView = model.PlayerView.readFrom(stream, reader);
             result.debugAvailable = StreamUtil.readBoolean(stream);
             return result;
         }
@@ -67,8 +73,11 @@ public abstract class ServerMessage {
             this.playerView = playerView;
         }
         public static DebugUpdate readFrom(java.io.InputStream stream) throws java.io.IOException {
+            return readFrom(stream, null);
+        }
+        public static DebugUpdate readFrom(java.io.InputStream stream, model.PlayerViewReader reader) throws java.io.IOException {
             DebugUpdate result = new DebugUpdate();
-            result.playerView = model.PlayerView.readFrom(stream);
+            result.playerView = model.PlayerView.readFrom(stream, reader);
             return result;
         }
         @Override
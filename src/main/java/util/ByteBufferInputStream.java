@@ -0,0 +1,194 @@
+package util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+public class ByteBufferInputStream extends InputStream {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final InputStream source;
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    // receives every consumed byte, bytes consumed from the buffer are handed over from tapPosition on
+    private ByteTap tap = null;
+    private int tapPosition = 0;
+
+    public ByteBufferInputStream(InputStream source) {
+        this(source, DEFAULT_CAPACITY);
+    }
+
+    public ByteBufferInputStream(InputStream source, int capacity) {
+        this.source = source;
+        this.channel = null;
+        this.buffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.flip();
+    }
+
+    // bytes are read from the channel straight into the given buffer, which may be direct
+    public ByteBufferInputStream(ReadableByteChannel channel, ByteBuffer buffer) {
+        this.source = null;
+        this.channel = channel;
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.clear().flip();
+    }
+
+    // reads only the remaining bytes of the given buffer, reading past them is an EOF
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.source = null;
+        this.channel = null;
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public void setTap(ByteTap tap) {
+        this.tap = tap;
+        this.tapPosition = buffer.position();
+    }
+
+    // hands the bytes consumed since the last call to the tap, they are also handed over whenever the buffer is refilled
+    public void flushTap() throws IOException {
+        if (tap == null || buffer.position() == tapPosition) return;
+        ByteBuffer consumed = buffer.duplicate();
+        consumed.limit(buffer.position()).position(tapPosition);
+        tap.accept(consumed);
+        tapPosition = buffer.position();
+    }
+
+    // reads as much as the source has available into the free part of the buffer
+    private int readSource() throws IOException {
+        if (channel != null) {
+            return channel.read(buffer);
+        }
+        int read = source.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        if (read > 0) {
+            buffer.position(buffer.position() + read);
+        }
+        return read;
+    }
+
+    // reads from the source until at least byteCount bytes are buffered
+    private void require(int byteCount) throws IOException {
+        if (buffer.remaining() >= byteCount) return;
+        if (source == null && channel == null) {
+            throw new IOException("Unexpected EOF");
+        }
+        flushTap();
+        buffer.compact();
+        try {
+            while (buffer.position() < byteCount) {
+                if (readSource() == -1) {
+                    throw new IOException("Unexpected EOF");
+                }
+            }
+        } finally {
+            buffer.flip();
+            tapPosition = 0;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        // a sourceless buffer may be read-only, it is never compacted
+        if (source == null && channel == null) return false;
+        flushTap();
+        buffer.compact();
+        try {
+            int read;
+            do {
+                read = readSource();
+            } while (read == 0);
+            return read != -1;
+        } finally {
+            buffer.flip();
+            tapPosition = 0;
+        }
+    }
+
+    public boolean readBoolean() throws IOException {
+        require(1);
+        return buffer.get() != 0;
+    }
+
+    public int readInt() throws IOException {
+        require(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    public long readLong() throws IOException {
+        require(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    public float readFloat() throws IOException {
+        require(Float.BYTES);
+        return buffer.getFloat();
+    }
+
+    public double readDouble() throws IOException {
+        require(Double.BYTES);
+        return buffer.getDouble();
+    }
+
+    public byte[] readBytes(int byteCount) throws IOException {
+        byte[] bytes = new byte[byteCount];
+        readFully(bytes, 0, byteCount);
+        return bytes;
+    }
+
+    public void readFully(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            int read = read(bytes, offset, length);
+            if (read == -1) {
+                throw new IOException("Unexpected EOF");
+            }
+            offset += read;
+            length -= read;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            if (length >= buffer.capacity() && (source != null || channel != null)) {
+                flushTap();
+                int read = channel != null ? channel.read(ByteBuffer.wrap(bytes, offset, length)) : source.read(bytes, offset, length);
+                if (tap != null && read > 0) {
+                    tap.accept(ByteBuffer.wrap(bytes, offset, read));
+                }
+                return read;
+            }
+            if (!fill()) {
+                return -1;
+            }
+        }
+        int count = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, count);
+        return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return channel != null || source == null ? buffer.remaining() : buffer.remaining() + source.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        } else if (source != null) {
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+public class ByteBufferOutputStream extends OutputStream {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final OutputStream target;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    // receives every written byte, bytes written to the buffer are handed over from tapPosition on
+    private ByteTap tap = null;
+    private int tapPosition = 0;
+
+    public ByteBufferOutputStream(OutputStream target) {
+        this(target, DEFAULT_CAPACITY);
+    }
+
+    public ByteBufferOutputStream(OutputStream target, int capacity) {
+        this.target = target;
+        this.channel = null;
+        this.buffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // bytes are encoded into the given buffer, which may be direct, and written to the channel on drain
+    public ByteBufferOutputStream(WritableByteChannel channel, ByteBuffer buffer) {
+        this.target = null;
+        this.channel = channel;
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.clear();
+    }
+
+    public void setTap(ByteTap tap) {
+        this.tap = tap;
+        this.tapPosition = buffer.position();
+    }
+
+    // hands the bytes written since the last call to the tap, they are also handed over whenever the buffer is drained
+    public void flushTap() throws IOException {
+        if (tap == null || buffer.position() == tapPosition) return;
+        ByteBuffer written = buffer.duplicate();
+        written.limit(buffer.position()).position(tapPosition);
+        tap.accept(written);
+        tapPosition = buffer.position();
+    }
+
+    private void writeChannel(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    private void drain() throws IOException {
+        flushTap();
+        tapPosition = 0;
+        if (buffer.position() > 0) {
+            if (channel != null) {
+                buffer.flip();
+                writeChannel(buffer);
+            } else {
+                target.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+            }
+            buffer.clear();
+        }
+    }
+
+    private void ensure(int byteCount) throws IOException {
+        if (buffer.remaining() < byteCount) {
+            drain();
+        }
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        ensure(1);
+        buffer.put((byte) (value ? 1 : 0));
+    }
+
+    public void writeInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    public void writeFloat(float value) throws IOException {
+        ensure(Float.BYTES);
+        buffer.putFloat(value);
+    }
+
+    public void writeDouble(double value) throws IOException {
+        ensure(Double.BYTES);
+        buffer.putDouble(value);
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (length > buffer.remaining()) {
+            drain();
+            if (length >= buffer.capacity()) {
+                if (tap != null) {
+                    tap.accept(ByteBuffer.wrap(bytes, offset, length));
+                }
+                if (channel != null) {
+                    writeChannel(ByteBuffer.wrap(bytes, offset, length));
+                } else {
+                    target.write(bytes, offset, length);
+                }
+                return;
+            }
+        }
+        buffer.put(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        if (target != null) {
+            target.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (channel != null) {
+            channel.close();
+        } else {
+            target.close();
+        }
+    }
+}
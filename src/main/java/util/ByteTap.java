@@ -0,0 +1,10 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// receives the bytes that pass through a ByteBufferInputStream or ByteBufferOutputStream, in order
+// the buffer is only valid during the call
+public interface ByteTap {
+    void accept(ByteBuffer bytes) throws IOException;
+}
@@ -0,0 +1,67 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// walks the records of a replay file written by ReplayWriter, the file is memory-mapped and payloads are views of the mapping
+// a single mapping limits replays to 2 GiB
+public class ReplayReader implements Closeable {
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private byte kind = 0;
+    private ByteBuffer payload = null;
+
+    public ReplayReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        if (channel.size() > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Replay " + path + " is larger than 2 GiB");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < ReplayWriter.HEADER_BYTES || buffer.getInt() != ReplayWriter.MAGIC) {
+            channel.close();
+            throw new IOException(path + " is not a replay");
+        }
+        int version = buffer.getInt();
+        if (version != ReplayWriter.VERSION) {
+            channel.close();
+            throw new IOException("Unsupported replay version " + version);
+        }
+    }
+
+    // moves to the next record, false at the end of the file or at a record cut short by a crash
+    public boolean next() {
+        if (buffer.remaining() < ReplayWriter.RECORD_HEADER_BYTES) return false;
+        int start = buffer.position();
+        kind = buffer.get();
+        int length = buffer.getInt();
+        if (length < 0 || buffer.remaining() < length) {
+            buffer.position(start);
+            return false;
+        }
+        payload = buffer.slice().limit(length);
+        buffer.position(buffer.position() + length);
+        return true;
+    }
+
+    public byte getKind() {
+        return kind;
+    }
+
+    // a read-only view of the current payload, positioned at its start
+    public ByteBuffer getPayload() {
+        return payload.duplicate();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
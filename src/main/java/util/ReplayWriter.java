@@ -0,0 +1,115 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// records the raw bytes a runner reads and writes into an append-only replay file
+// the file is a header (MAGIC, VERSION) followed by records of [kind: byte][length: int][payload], little endian
+// the bytes are collected through taps on the runner's streams, and the records of an exchange go out as one gathering
+// channel write once the reply has been sent, so recording never delays it
+public class ReplayWriter implements Closeable {
+    public static final int MAGIC = 0x52504C59;
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 2 * Integer.BYTES;
+    public static final int RECORD_HEADER_BYTES = 1 + Integer.BYTES;
+
+    // a whole ServerMessage as read
+    public static final byte SERVER_MESSAGE = 1;
+    // server bytes read while handling a message, such as debug states
+    public static final byte SERVER_EXTRA = 2;
+    // the ClientMessages sent in reply to a ServerMessage
+    public static final byte CLIENT_MESSAGES = 3;
+
+    private final FileChannel channel;
+    private final ByteBufferInputStream inputStream;
+    private final ByteBufferOutputStream outputStream;
+    private final ByteBuffer[] recordHeaders = new ByteBuffer[3];
+    private final ByteBuffer[] records = new ByteBuffer[6];
+    private ByteBuffer serverBytes = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer clientBytes = ByteBuffer.allocate(1 << 12);
+    // where the server message ends in serverBytes, the bytes after it were read while handling it
+    private int serverMessageEnd = 0;
+
+    public ReplayWriter(Path path, ByteBufferInputStream inputStream, ByteBufferOutputStream outputStream) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+        this.inputStream = inputStream;
+        this.outputStream = outputStream;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        writeFully(header);
+        for (int i = 0; i < recordHeaders.length; i++) {
+            recordHeaders[i] = ByteBuffer.allocate(RECORD_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        inputStream.setTap(bytes -> serverBytes = append(serverBytes, bytes));
+        outputStream.setTap(bytes -> clientBytes = append(clientBytes, bytes));
+    }
+
+    private static ByteBuffer append(ByteBuffer target, ByteBuffer bytes) {
+        if (target.remaining() < bytes.remaining()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(target.capacity() * 2, target.position() + bytes.remaining()));
+            target.flip();
+            grown.put(target);
+            target = grown;
+        }
+        target.put(bytes);
+        return target;
+    }
+
+    // splits the server bytes consumed so far off as the message just read, nothing is written yet
+    public void endServerMessage() throws IOException {
+        inputStream.flushTap();
+        serverMessageEnd = serverBytes.position();
+    }
+
+    // writes the message ended last, the server bytes consumed after it and the client bytes written since,
+    // records without bytes are left out
+    public void recordExchange() throws IOException {
+        inputStream.flushTap();
+        outputStream.flushTap();
+        serverBytes.flip();
+        clientBytes.flip();
+        ByteBuffer message = serverBytes.duplicate();
+        message.limit(serverMessageEnd);
+        ByteBuffer extra = serverBytes.duplicate();
+        extra.position(serverMessageEnd);
+        int count = 0;
+        count = addRecord(count, SERVER_MESSAGE, message);
+        count = addRecord(count, SERVER_EXTRA, extra);
+        count = addRecord(count, CLIENT_MESSAGES, clientBytes);
+        while (count > 0 && records[count - 1].hasRemaining()) {
+            channel.write(records, 0, count);
+        }
+        serverBytes.clear();
+        clientBytes.clear();
+        serverMessageEnd = 0;
+    }
+
+    private int addRecord(int count, byte kind, ByteBuffer payload) {
+        if (!payload.hasRemaining()) return count;
+        ByteBuffer recordHeader = recordHeaders[count / 2];
+        recordHeader.clear();
+        recordHeader.put(kind).putInt(payload.remaining()).flip();
+        records[count] = recordHeader;
+        records[count + 1] = payload;
+        return count + 2;
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.setTap(null);
+        outputStream.setTap(null);
+        channel.close();
+    }
+}
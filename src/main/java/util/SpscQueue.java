@@ -0,0 +1,90 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// bounded lock-free queue between exactly one producer thread and one consumer thread
+// waiting spins first, then yields, then parks briefly, so a handoff right after the wait started costs no context switch
+public class SpscQueue<T> {
+    public static final int SPIN_LIMIT = 1 << 10;
+    public static final int YIELD_LIMIT = SPIN_LIMIT + (1 << 6);
+    public static final long PARK_NANOS = 50_000;
+
+    private final Object[] elements;
+    private final int mask;
+    // next slot to write, only advanced by the producer
+    private final AtomicLong tail = new AtomicLong();
+    // next slot to read, only advanced by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // the other side's index as last seen, so the shared one is only read when the queue looks full or empty
+    private long producerCachedHead = 0;
+    private long consumerCachedTail = 0;
+
+    // the capacity is rounded up to a power of two
+    public SpscQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.elements = new Object[size];
+        this.mask = size - 1;
+    }
+
+    // producer side, false when the queue is full
+    public boolean offer(T element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long currentTail = tail.get();
+        if (currentTail - producerCachedHead == elements.length) {
+            producerCachedHead = head.get();
+            if (currentTail - producerCachedHead == elements.length) return false;
+        }
+        elements[(int) currentTail & mask] = element;
+        // the release store publishes the element together with the new tail
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    // consumer side, null when the queue is empty
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long currentHead = head.get();
+        if (currentHead == consumerCachedTail) {
+            consumerCachedTail = tail.get();
+            if (currentHead == consumerCachedTail) return null;
+        }
+        int index = (int) currentHead & mask;
+        T element = (T) elements[index];
+        elements[index] = null;
+        head.lazySet(currentHead + 1);
+        return element;
+    }
+
+    public void put(T element) {
+        for (int idleCount = 0; !offer(element); idleCount++) {
+            idle(idleCount);
+        }
+    }
+
+    public T take() {
+        for (int idleCount = 0; ; idleCount++) {
+            T element = poll();
+            if (element != null) return element;
+            idle(idleCount);
+        }
+    }
+
+    private static void idle(int idleCount) {
+        if (idleCount < SPIN_LIMIT) {
+            Thread.onSpinWait();
+        } else if (idleCount < YIELD_LIMIT) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
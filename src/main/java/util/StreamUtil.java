@@ -10,6 +10,9 @@ import java.nio.charset.StandardCharsets;
 
 public class StreamUtil {
     public static byte[] readBytes(InputStream stream, int byteCount) throws IOException {
+        if (stream instanceof ByteBufferInputStream) {
+            return ((ByteBufferInputStream) stream).readBytes(byteCount);
+        }
         byte[] bytes = new byte[byteCount];
         int offset = 0;
         while (offset < bytes.length) {
@@ -26,22 +29,37 @@ public class StreamUtil {
     }
 
     public static boolean readBoolean(InputStream stream) throws IOException {
+        if (stream instanceof ByteBufferInputStream) {
+            return ((ByteBufferInputStream) stream).readBoolean();
+        }
         return ByteBuffer.wrap(readBytes(stream, 1)).get() != 0;
     }
 
     public static int readInt(InputStream stream) throws IOException {
+        if (stream instanceof ByteBufferInputStream) {
+            return ((ByteBufferInputStream) stream).readInt();
+        }
         return ByteBuffer.wrap(readBytes(stream, Integer.BYTES)).order(ByteOrder.LITTLE_ENDIAN).getInt();
     }
 
     public static long readLong(InputStream stream) throws IOException {
+        if (stream instanceof ByteBufferInputStream) {
+            return ((ByteBufferInputStream) stream).readLong();
+        }
         return ByteBuffer.wrap(readBytes(stream, Long.BYTES)).order(ByteOrder.LITTLE_ENDIAN).getLong();
     }
 
     public static float readFloat(InputStream stream) throws IOException {
+        if (stream instanceof ByteBufferInputStream) {
+            return ((ByteBufferInputStream) stream).readFloat();
+        }
         return ByteBuffer.wrap(readBytes(stream, Float.BYTES)).order(ByteOrder.LITTLE_ENDIAN).getFloat();
     }
 
     public static double readDouble(InputStream stream) throws IOException {
+        if (stream instanceof ByteBufferInputStream) {
+            return ((ByteBufferInputStream) stream).readDouble();
+        }
         return ByteBuffer.wrap(readBytes(stream, Double.BYTES)).order(ByteOrder.LITTLE_ENDIAN).getDouble();
     }
 
@@ -55,22 +73,42 @@ public class StreamUtil {
     }
 
     public static void writeBoolean(OutputStream stream, boolean value) throws IOException {
+        if (stream instanceof ByteBufferOutputStream) {
+            ((ByteBufferOutputStream) stream).writeBoolean(value);
+            return;
+        }
         writeBytes(stream, new byte[] { (byte) (value ? 1 : 0) });
     }
 
     public static void writeInt(OutputStream stream, int value) throws IOException {
+        if (stream instanceof ByteBufferOutputStream) {
+            ((ByteBufferOutputStream) stream).writeInt(value);
+            return;
+        }
         writeBytes(stream, ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array());
     }
 
     public static void writeLong(OutputStream stream, long value) throws IOException {
+        if (stream instanceof ByteBufferOutputStream) {
+            ((ByteBufferOutputStream) stream).writeLong(value);
+            return;
+        }
         writeBytes(stream, ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(value).array());
     }
 
     public static void writeFloat(OutputStream stream, float value) throws IOException {
+        if (stream instanceof ByteBufferOutputStream) {
+            ((ByteBufferOutputStream) stream).writeFloat(value);
+            return;
+        }
         writeBytes(stream, ByteBuffer.allocate(Float.BYTES).order(ByteOrder.LITTLE_ENDIAN).putFloat(value).array());
     }
 
     public static void writeDouble(OutputStream stream, double value) throws IOException {
+        if (stream instanceof ByteBufferOutputStream) {
+            ((ByteBufferOutputStream) stream).writeDouble(value);
+            return;
+        }
         writeBytes(stream, ByteBuffer.allocate(Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).putDouble(value).array());
     }
 